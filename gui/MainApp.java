@@ -17,6 +17,7 @@ public class MainApp extends Application {
 
 	private Stage primaryStage;
 	private BorderPane rootLayout;
+	private TaskOverviewController controller;
 	
 	/**
 	 * The data as an observable list of Tasks.
@@ -96,7 +97,7 @@ public class MainApp extends Application {
 			rootLayout.setCenter(mainOverview);
 			
 			// Give the controller access to the main app.
-			TaskOverviewController controller = loader.getController();
+			controller = loader.getController();
 			controller.setMainApp(this);
 			controller.setup();
 			
@@ -105,6 +106,16 @@ public class MainApp extends Application {
 		}
 	}
 	
+	/**
+	 * Saves any pending changes before the application closes.
+	 */
+	@Override
+	public void stop() {
+		if (controller != null && controller.getLogic() != null) {
+			controller.getLogic().shutdown();
+		}
+	}
+	
 	/**
 	 * Returns the main stage.
 	 * @return
@@ -10,7 +10,14 @@ import java.time.Period;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.time.temporal.TemporalAdjusters;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.*;
 import java.io.*;
 import java.nio.file.Paths;
@@ -18,7 +25,9 @@ import java.nio.file.Paths;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import sound.Sound;
+import storage.CommitLog;
 import vault.CompletedTaskVault;
+import vault.FileFormat;
 import vault.HistoryVault;
 import vault.TaskVault;
 import vault.TrashVault;
@@ -62,6 +71,8 @@ public class CdLogic {
 	
 	//constants generated for search method
 	private static final String MESSAGE_TASKS_FOUND = " tasks found";
+	// Ranked matches shown first by search, one page of the display
+	private static final int SEARCH_PAGE_SIZE = 20;
 	
 	//constants generated for complete method
 	private static final String MESSAGE_COMPLETE_FAIL = "\"%s\" could not be completed";
@@ -195,6 +206,13 @@ public class CdLogic {
 	private static final int LIST_DATE_2 = 2;
 	private static final int LIST_TIME_2 = 3;
 	
+	//longest time a save may be deferred to coalesce bursts of commands
+	private static final long SAVE_DELAY_MILLIS = 250;
+	//log that commits the vault journals and the id registry together
+	private static final String COMMIT_LOG = "commit.log";
+	//one thread per file loaded at startup: four vaults and the id registry
+	private static final int LOADER_THREADS = 5;
+	
 	//CdLogic Field
 	private static TaskVault taskVault;
 	private static TrashVault trashVault;
@@ -202,6 +220,9 @@ public class CdLogic {
 	private static CompletedTaskVault completedTaskVault;
 	private static Stack<UNDOABLE> commandStack;
 	private static String vaultPath;
+	private static SaveScheduler saveScheduler;
+	private static CommitLog commitLog;
+	private static final Object vaultLock = new Object();
 
 	private static ObservableList<Task> toDisplay;
 	private static ObservableList<Task> tasks;
@@ -229,25 +250,55 @@ public class CdLogic {
 	 */
 
 	public CdLogic() throws IOException {
-		initializeFromConfig();
-		initializeVaults();
-		historyVault.clear();
-		historyVault = new HistoryVault(vaultPath);
-		commandStack = new Stack<UNDOABLE>();
-		tasks = taskVault.getList();
-		toDisplay = copyList(tasks);
-		lookForRecurrence();
-		sound = new Sound();
+		synchronized (vaultLock) {
+			if (saveScheduler != null) {
+				saveScheduler.shutdown();
+			}
+			saveScheduler = new SaveScheduler(() -> writeVaults(), vaultLock,
+					SAVE_DELAY_MILLIS);
+			initializeFromConfig();
+			initializeVaults();
+			historyVault.clear();
+			historyVault = new HistoryVault(vaultPath);
+			commandStack = new Stack<UNDOABLE>();
+			tasks = taskVault.getList();
+			toDisplay = copyList(tasks);
+			lookForRecurrence();
+			sound = new Sound();
+			saveVaults();
+		}
 	}
 
 	/**
 	 * For testing purposes: Clears all lists and all data from the files.
 	 */
 	public void clear() {
-		taskVault.clear();
-		trashVault.clear();
-		historyVault.clear();
-		completedTaskVault.clear();
+		synchronized (vaultLock) {
+			saveScheduler.flush();
+			taskVault.clear();
+			trashVault.clear();
+			historyVault.clear();
+			completedTaskVault.clear();
+		}
+	}
+
+	/**
+	 * Writes any pending changes to disk and returns once they are saved.
+	 */
+	public void flush() {
+		saveScheduler.flush();
+	}
+
+	/**
+	 * Writes any pending changes to disk and stops background saving. To be
+	 * called before the application exits.
+	 */
+	public void shutdown() {
+		saveScheduler.shutdown();
+		synchronized (vaultLock) {
+			commitLog.commit();
+			commitLog.checkpoint();
+		}
 	}
 
 	/**
@@ -276,7 +327,7 @@ public class CdLogic {
 	 * GUI
 	 */
 	public ObservableList<Task> getTaskList() {
-		tasks = FXCollections.observableArrayList(taskVault.getList());
+		tasks = taskVault.getList();
 
 		return FXCollections.observableArrayList(toDisplay);
 	}
@@ -285,6 +336,18 @@ public class CdLogic {
 		return toDisplay;
 	}
 
+	/**
+	 * Returns at most limit tasks whose name or comment holds any of the
+	 * words, best match first, so that the GUI can fetch one page of results
+	 * 
+	 * @param query
+	 * @param limit
+	 * @return the best matching tasks
+	 */
+	public List<Task> searchText(String query, int limit) {
+		return taskVault.searchText(query, limit);
+	}
+
 	/**
 	 * If command is empty, will display MESSAGE_INVALID_FORMAT Else, it will
 	 * check the first word entered by user followed by obtaining the command
@@ -298,6 +361,12 @@ public class CdLogic {
 	 */
 
 	public String executeCommand(String userCommand) throws IOException {
+		synchronized (vaultLock) {
+			return execute(userCommand);
+		}
+	}
+
+	private String execute(String userCommand) throws IOException {
 		tasks = taskVault.getList();
 		lookForRecurrence();
 
@@ -325,6 +394,7 @@ public class CdLogic {
 		case INVALID:
 			return String.format(MESSAGE_INVALID_FORMAT, userCommand);
 		case EXIT:
+			shutdown();
 			System.exit(0);
 		case UNDO:
 			return undo();
@@ -679,33 +749,7 @@ public class CdLogic {
 	 */
 	private boolean hasOverlap(LocalDateTime localDateTime,
 			LocalDateTime localDateTime2) {
-		for (int i = 0; i < taskVault.getList().size(); i++) {
-			Task currTask = taskVault.getList().get(i);
-			if ((currTask.getStartDate() != null)
-					&& (currTask.getEndDate() != null)) {
-				if (localDateTime2.isAfter(getStartLDT(currTask))
-						&& localDateTime2.isBefore(getEndLDT(currTask))) {
-					return true;
-				}
-				if (localDateTime.isAfter(getStartLDT(currTask))
-						&& localDateTime.isBefore(getEndLDT(currTask))) {
-					return true;
-				}
-				if (localDateTime.equals(getStartLDT(currTask))
-						|| localDateTime2.equals(getEndLDT(currTask))){
-					return true;
-				}
-				if (getStartLDT(currTask).isAfter(localDateTime)
-						&& getStartLDT(currTask).isBefore(localDateTime2)) {
-					return true;
-				}
-				if (getEndLDT(currTask).isAfter(localDateTime)
-						&& getEndLDT(currTask).isBefore(localDateTime2)) {
-					return true;
-				}
-			}
-		}
-		return false;
+		return taskVault.hasOverlap(localDateTime, localDateTime2);
 	}
 
 	/**
@@ -1020,7 +1064,7 @@ public class CdLogic {
 	 */
 	private void copyId(Task toRecur, RecurringTask newRecurringTask) {
 		newRecurringTask.setId(toRecur.getId());
-		IdGenerator idGenerator = new IdGenerator();
+		IdGenerator idGenerator = IdGenerator.getInstance();
 		idGenerator.addId(
 				Integer.parseInt(toRecur.getId().substring(1), 36),
 				toRecur.getTaskName());
@@ -1152,29 +1196,7 @@ public class CdLogic {
 	 * @return taskName or id of task contained in the string
 	 */
 	private String lookForTaskName(String trimmedCommand) {
-		String found = "";
-		ObservableList<Task> list = taskVault.getList();
-
-		if (trimmedCommand.startsWith("@")) {
-			for (int i = 0; i < list.size(); i++) {
-				Task currTask = list.get(i);
-				if (trimmedCommand.contains(currTask.getId())
-						&& (currTask.getId().length() > found.length())) {
-					found = currTask.getId();
-				}
-			}
-			return found;
-		} else {
-
-			for (int i = 0; i < list.size(); i++) {
-				Task currTask = list.get(i);
-				if (trimmedCommand.contains(currTask.getTaskName())
-						&& (currTask.getTaskName().length() > found.length())) {
-					found = currTask.getTaskName();
-				}
-			}
-			return found;
-		}
+		return taskVault.findLongestKey(trimmedCommand);
 	}
 
 	/**
@@ -1224,16 +1246,75 @@ public class CdLogic {
 	}
 
 	/**
-	 * creates an instance of the different Vault classes
+	 * creates an instance of the different Vault classes. The vault files
+	 * and the id registry are independent, so they are loaded concurrently
+	 * and joined before returning. Any commit left unfinished by a crash is
+	 * recovered first, and the journals are then committed together.
 	 * 
 	 * @throws IOException
 	 */
 	private void initializeVaults() throws IOException {
 		String vaultPath = System.getProperty(USER_DIR);
-		taskVault = new TaskVault(vaultPath);
-		trashVault = new TrashVault(vaultPath);
-		historyVault = new HistoryVault(vaultPath);
-		completedTaskVault = new CompletedTaskVault(vaultPath);
+		commitLog = new CommitLog(Paths.get(vaultPath, COMMIT_LOG));
+		commitLog.checkpoint();
+		ExecutorService loader = Executors.newFixedThreadPool(LOADER_THREADS);
+		try {
+			Future<TaskVault> taskLoad = loader.submit(
+					() -> new TaskVault(vaultPath));
+			Future<TrashVault> trashLoad = loader.submit(
+					() -> new TrashVault(vaultPath));
+			Future<HistoryVault> historyLoad = loader.submit(
+					() -> new HistoryVault(vaultPath));
+			Future<CompletedTaskVault> completedLoad = loader.submit(
+					() -> new CompletedTaskVault(vaultPath));
+			Future<IdGenerator> idLoad = loader.submit(
+					() -> IdGenerator.getInstance());
+			taskVault = join(taskLoad);
+			trashVault = join(trashLoad);
+			historyVault = join(historyLoad);
+			completedTaskVault = join(completedLoad);
+			join(idLoad);
+		} finally {
+			loader.shutdown();
+		}
+		taskVault.setJournaled(true);
+		trashVault.setJournaled(true);
+		trashVault.setFileFormat(FileFormat.BINARY);
+		trashVault.setSegmented(true);
+		completedTaskVault.setJournaled(true);
+		completedTaskVault.setFileFormat(FileFormat.BINARY);
+		completedTaskVault.setSegmented(true);
+		commitLog.register(taskVault.getJournal());
+		commitLog.register(trashVault.getJournal());
+		commitLog.register(completedTaskVault.getJournal());
+		commitLog.register(IdGenerator.getInstance().getJournal());
+	}
+
+	/**
+	 * Waits for a load started by initializeVaults and returns its result,
+	 * rethrowing any failure of the load.
+	 * 
+	 * @throws IOException
+	 */
+	private static <T> T join(Future<T> load) throws IOException {
+		try {
+			return load.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while loading");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IOException(cause);
+		}
 	}
 
 	/**
@@ -1279,7 +1360,7 @@ public class CdLogic {
 
 	private String undoRecur() {
 		Task historyTask = historyVault.pop(getLastHistoryName());
-		IdGenerator idGenerator = new IdGenerator();
+		IdGenerator idGenerator = IdGenerator.getInstance();
 		if(!idGenerator.isExistingId(historyTask.getId()) || !historyTask.getTaskName().equals(idGenerator.getTaskName(historyTask.getId()))){
 			return undo();
 		}
@@ -1331,8 +1412,7 @@ public class CdLogic {
 	 * @return
 	 */
 	private String getLastHistoryName() {
-		return historyVault.getList().get(historyVault.getList().size() - 1)
-				.getTaskName();
+		return historyVault.peek().getTaskName();
 	}
 
 	/**
@@ -1342,7 +1422,7 @@ public class CdLogic {
 		Task newTask = historyVault.pop(getLastHistoryName());
 		Task oldTask = historyVault.pop(getLastHistoryName());
 		
-		IdGenerator idGenerator = new IdGenerator();
+		IdGenerator idGenerator = IdGenerator.getInstance();
 		if(!idGenerator.isExistingId(newTask.getId()) || !newTask.getTaskName().equals(idGenerator.getTaskName(newTask.getId()))){
 			return undo();
 		}
@@ -1360,7 +1440,7 @@ public class CdLogic {
 
 	private String undoDelete() {
 		Task historyTask = historyVault.pop(getLastHistoryName());
-		IdGenerator idGenerator = new IdGenerator();
+		IdGenerator idGenerator = IdGenerator.getInstance();
 		if(!idGenerator.isExistingId(historyTask.getId()) || !historyTask.getTaskName().equals(idGenerator.getTaskName(historyTask.getId()))){
 			return undo();
 		}
@@ -1377,7 +1457,7 @@ public class CdLogic {
 	 */
 	private String undoComplete() {
 		Task historyTask = historyVault.pop(getLastHistoryName());
-		IdGenerator idGenerator = new IdGenerator();
+		IdGenerator idGenerator = IdGenerator.getInstance();
 		if(!idGenerator.isExistingId(historyTask.getId()) || !historyTask.getTaskName().equals(idGenerator.getTaskName(historyTask.getId()))){
 			return undo();
 		}
@@ -1397,7 +1477,7 @@ public class CdLogic {
 
 	private String undoAdd() {
 		Task historyTask = historyVault.pop(getLastHistoryName());
-		IdGenerator idGenerator = new IdGenerator();
+		IdGenerator idGenerator = IdGenerator.getInstance();
 		if(!idGenerator.isExistingId(historyTask.getId()) || !historyTask.getTaskName().equals(idGenerator.getTaskName(historyTask.getId()))){
 			return undo();
 		}
@@ -1408,13 +1488,27 @@ public class CdLogic {
 	}
 
 	/**
-	 *
+	 * Requests the vaults to be saved if any of them changed. The save runs
+	 * in the background and coalesces with saves requested by the commands
+	 * that follow shortly. Vaults that did not change are skipped by save().
 	 */
 	private void saveVaults() {
+		if (taskVault.isModified() || trashVault.isModified()
+				|| completedTaskVault.isModified() || commitLog.hasPending()) {
+			saveScheduler.requestSave();
+		}
+	}
+
+	/**
+	 * Saves all the vaults. Runs on the save scheduler holding vaultLock.
+	 */
+	private static void writeVaults() {
+		commitLog.commit();
 		taskVault.save();
 		trashVault.save();
 		completedTaskVault.save();
 		historyVault.save();
+		IdGenerator.getInstance().checkpoint();
 	}
 
 	/**
@@ -1726,7 +1820,7 @@ public class CdLogic {
 			newRecurringTask.setId(taskVault.getTask(oldRecurringTask.getTaskName()).getId());
 		}
 		taskVault.remove(oldRecurringTask.getTaskName());
-		IdGenerator idGenerator = new IdGenerator();
+		IdGenerator idGenerator = IdGenerator.getInstance();
 		idGenerator.addId(
 				Integer.parseInt(newRecurringTask.getId().substring(1), 36),
 				newRecurringTask.getTaskName());
@@ -1797,7 +1891,7 @@ public class CdLogic {
 			newRecurringTask.setId(taskVault.getTask(newTaskName).getId());
 		}
 		taskVault.remove(newTaskName);
-		IdGenerator idGenerator = new IdGenerator();
+		IdGenerator idGenerator = IdGenerator.getInstance();
 		idGenerator.addId(
 				Integer.parseInt(newRecurringTask.getId().substring(1), 36),
 				newRecurringTask.getTaskName());
@@ -1866,48 +1960,29 @@ public class CdLogic {
 
 		String[] searchWords = parseSearch(userCommand);
 		toDisplay.clear();
-		int found = 0;
+		Set<Task> found = new HashSet<Task>();
 
-		for (int taskIndex = 0; taskIndex < tasks.size(); taskIndex++) {
-			if (isCompleteMatch(userCommand, taskIndex)) {
-				toDisplay.add(tasks.get(taskIndex));
-				found++;
+		for (Task task : taskVault.getTasksNamed(userCommand)) {
+			if (found.add(task)) {
+				toDisplay.add(task);
+			}
+		}
+		// First page of tasks whose name or comment holds the words, best
+		// match first; the other substring matches follow unranked
+		for (Task task : searchText(userCommand, SEARCH_PAGE_SIZE)) {
+			if (found.add(task)) {
+				toDisplay.add(task);
 			}
 		}
 		for (int wordIndex = 0; wordIndex < searchWords.length; wordIndex++) {
 			String currentWord = searchWords[wordIndex];
-			for (int taskIndex = 0; taskIndex < tasks.size(); taskIndex++) {
-				if (isPartialMatch(currentWord, taskIndex)
-						&& isNotYetFound(taskIndex)) {
-					toDisplay.add(tasks.get(taskIndex));
-					found++;
+			for (Task task : taskVault.getTasksContaining(currentWord)) {
+				if (found.add(task)) {
+					toDisplay.add(task);
 				}
 			}
 		}
-		return found + MESSAGE_TASKS_FOUND;
-	}
-
-	/**
-	 * @param taskIndex
-	 */
-	private boolean isNotYetFound(int taskIndex) {
-		return !(toDisplay.contains(tasks.get(taskIndex)));
-	}
-
-	/**
-	 * @param currentWord
-	 *            , taskIndex
-	 */
-	private boolean isPartialMatch(String currentWord, int taskIndex) {
-		return tasks.get(taskIndex).getTaskName().contains(currentWord);
-	}
-
-	/**
-	 * @param userCommand
-	 *            , taskIndex
-	 */
-	private boolean isCompleteMatch(String userCommand, int taskIndex) {
-		return tasks.get(taskIndex).getTaskName().equals(userCommand);
+		return found.size() + MESSAGE_TASKS_FOUND;
 	}
 
 	/**
@@ -1926,6 +2001,10 @@ public class CdLogic {
 		} else if (userCommand.equalsIgnoreCase("completed")) {
 			completedTaskVault.clear();
 			completedTaskVault = new CompletedTaskVault(vaultPath);
+			completedTaskVault.setJournaled(true);
+			completedTaskVault.setFileFormat(FileFormat.BINARY);
+			completedTaskVault.setSegmented(true);
+			commitLog.register(completedTaskVault.getJournal());
 			return "Completed tasks cleared";
 		} else {
 			return "Specify to empty trash or completed tasks";
@@ -1955,15 +2034,15 @@ public class CdLogic {
 		}
 		if (listArguments[0].equalsIgnoreCase("trash")
 				|| listArguments[0].equals("deleted")) {
-			toDisplay = trashVault.getList();
+			toDisplay = copyList(trashVault.getList());
 			return MESSAGE_TRASH_DISPLAYED;
 		}
 		if (listArguments[0].equalsIgnoreCase("completed")) {
-			toDisplay = completedTaskVault.getList();
+			toDisplay = copyList(completedTaskVault.getList());
 			return MESSAGE_COMPLETED_DISPLAYED;
 		}
 		if (listArguments[0].equalsIgnoreCase("history")) {
-			toDisplay = historyVault.getList();
+			toDisplay = copyList(historyVault.getList());
 			return MESSAGE_HISTORY_DISPLAYED;
 		}
 
@@ -1997,8 +2076,7 @@ public class CdLogic {
 		LocalDate date1 = toLocalDate(listArguments[0]);
 		LocalDate date2 = toLocalDate(listArguments[1]);
 
-		for (int tasksIndex = 0; tasksIndex < tasks.size(); tasksIndex++) {
-			Task currTask = tasks.get(tasksIndex);
+		for (Task currTask : taskVault.getTasksBetween(date1, date2)) {
 			if (currTask.getEndDate() != null) {
 				if (currTask.getStartDate().equals(date1)
 						|| currTask.getEndDate().equals(date1)
@@ -2106,8 +2184,8 @@ public class CdLogic {
 		LocalDateTime dateTime2 = LocalDateTime.of(
 				toLocalDate(listArguments[2]), toLocalTime(listArguments[3]));
 
-		for (int taskIndex = 0; taskIndex < tasks.size(); taskIndex++) {
-			Task currTask = tasks.get(taskIndex);
+		for (Task currTask : taskVault.getTasksBetween(
+				dateTime1.toLocalDate(), dateTime2.toLocalDate())) {
 			if (currTask.getStartDate() != null) {
 				if ((getStartLDT(currTask).compareTo(dateTime1) >= 0)
 						&& (getStartLDT(currTask).compareTo(dateTime2) <= 0)) {
@@ -2133,9 +2211,9 @@ public class CdLogic {
 		int tasksFound = 0;
 		LocalDateTime dateTime1 = LocalDateTime.of(
 				toLocalDate(listArguments[0]), toLocalTime(listArguments[1]));
+		LocalDate date1 = dateTime1.toLocalDate();
 
-		for (int tasksIndex = 0; tasksIndex < tasks.size(); tasksIndex++) {
-			Task currTask = tasks.get(tasksIndex);
+		for (Task currTask : taskVault.getTasksBetween(date1, date1)) {
 			if (currTask.getEndDate() != null) {
 				if (getStartLDT(currTask).equals(dateTime1)
 						|| getEndLDT(currTask).equals(dateTime1)) {
@@ -2163,8 +2241,7 @@ public class CdLogic {
 	private int listDate(String dateString) {
 		int tasksFound = 0;
 		LocalDate date1 = toLocalDate(dateString);
-		for (int tasksIndex = 0; tasksIndex < tasks.size(); tasksIndex++) {
-			Task currTask = tasks.get(tasksIndex);
+		for (Task currTask : taskVault.getTasksBetween(date1, date1)) {
 			if (currTask.getEndDate() != null) {
 				if (currTask.getStartDate().equals(date1)
 						|| currTask.getEndDate().equals(date1)) {
@@ -2278,41 +2355,12 @@ public class CdLogic {
 				return MESSAGE_END_BEFORE_START;
 			}
 
-			for (int i = 0; i < tasks.size(); i++) {
-				Task currTask = tasks.get(i);
-				if (currTask.getEndDate() != null) {
-					if (startDateTime.isAfter(getStartLDT(currTask))
-							&& startDateTime.isBefore(getEndLDT(currTask))) {
-						return "\"" + addArguments[INDEX_TASKNAME]
-								+ "\" cannot overlap with \""
-								+ currTask.getTaskName() + "\"";
-					}
-					if (endDateTime.isAfter(getStartLDT(currTask))
-							&& endDateTime.isBefore(getEndLDT(currTask))) {
-						return "\"" + addArguments[INDEX_TASKNAME]
-								+ "\" cannot overlap with \""
-								+ currTask.getTaskName() + "\"";
-					}
-					if (getStartLDT(currTask).isAfter(startDateTime)
-							&& getStartLDT(currTask).isBefore(endDateTime)) {
-						return "\"" + addArguments[INDEX_TASKNAME]
-								+ "\" cannot overlap with \""
-								+ currTask.getTaskName() + "\"";
-					}
-					if (getEndLDT(currTask).isAfter(startDateTime)
-							&& getEndLDT(currTask).isBefore(endDateTime)) {
-						return "\"" + addArguments[INDEX_TASKNAME]
-								+ "\" cannot overlap with \""
-								+ currTask.getTaskName() + "\"";
-					}
-					if (getStartLDT(currTask).equals(startDateTime)
-							&& getEndLDT(currTask).equals(endDateTime)) {
-						return "\"" + addArguments[INDEX_TASKNAME]
-								+ "\" cannot overlap with \""
-								+ currTask.getTaskName() + "\"";
-					}
-					
-				}
+			List<Task> overlaps = taskVault.getOverlappingTasks(startDateTime,
+					endDateTime);
+			if (!overlaps.isEmpty()) {
+				return "\"" + addArguments[INDEX_TASKNAME]
+						+ "\" cannot overlap with \""
+						+ overlaps.get(0).getTaskName() + "\"";
 			}
 		}
 
@@ -0,0 +1,99 @@
+package logic;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <h1>SaveScheduler Class</h1> Runs saves on a background thread and
+ * coalesces the save requests from a burst of commands into a single save.
+ * A requested save runs at most maxDelay milliseconds after the first
+ * request of the burst. The save always runs while holding the given lock,
+ * so callers that mutate the saved data must hold the same lock.
+ *
+ */
+public class SaveScheduler {
+
+	private static final String THREAD_NAME = "save-scheduler";
+
+	private final Runnable saveAction;
+	private final Object lock;
+	private final long maxDelay;
+	private final ScheduledExecutorService executor;
+	private ScheduledFuture<?> pendingSave;
+
+	/**
+	 * @param saveAction
+	 *            the save to run
+	 * @param lock
+	 *            the lock guarding the data being saved
+	 * @param maxDelay
+	 *            the longest a save may be deferred, in milliseconds
+	 */
+	public SaveScheduler(Runnable saveAction, Object lock, long maxDelay) {
+		this.saveAction = saveAction;
+		this.lock = lock;
+		this.maxDelay = maxDelay;
+		this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, THREAD_NAME);
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Requests a save. Does nothing if a save is already pending, since
+	 * that save will pick up this change as well.
+	 */
+	public synchronized void requestSave() {
+		if (pendingSave == null && !executor.isShutdown()) {
+			pendingSave = executor.schedule(this::runPendingSave, maxDelay,
+					TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Runs any pending save on the caller's thread and returns once
+	 * everything requested so far is on disk.
+	 */
+	public void flush() {
+		boolean hasPendingSave;
+		synchronized (this) {
+			hasPendingSave = (pendingSave != null);
+			if (hasPendingSave) {
+				pendingSave.cancel(false);
+				pendingSave = null;
+			}
+		}
+		// Also waits for a save that is already running to finish
+		synchronized (lock) {
+			if (hasPendingSave) {
+				saveAction.run();
+			}
+		}
+	}
+
+	/**
+	 * Flushes any pending save and stops the background thread. Requests
+	 * made after shutdown are ignored.
+	 */
+	public void shutdown() {
+		synchronized (this) {
+			executor.shutdown();
+		}
+		flush();
+	}
+
+	private void runPendingSave() {
+		synchronized (lock) {
+			synchronized (this) {
+				if (pendingSave == null) {
+					return;
+				}
+				pendingSave = null;
+			}
+			saveAction.run();
+		}
+	}
+}
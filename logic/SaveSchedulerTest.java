@@ -0,0 +1,88 @@
+package logic;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class SaveSchedulerTest {
+
+	private static final long DELAY = 50;
+
+	private AtomicInteger saves;
+	private Object lock;
+
+	@Before
+	public void setUp() {
+		saves = new AtomicInteger();
+		lock = new Object();
+	}
+
+	@Test
+	//a burst of requests is saved once, and a later request saves again
+	public void testRequestsCoalesced() throws InterruptedException {
+		SaveScheduler scheduler = new SaveScheduler(saves::incrementAndGet,
+				lock, DELAY);
+		for (int i = 0; i < 10; i++) {
+			scheduler.requestSave();
+		}
+		Thread.sleep(DELAY * 6);
+		assertEquals(1, saves.get());
+		scheduler.requestSave();
+		Thread.sleep(DELAY * 6);
+		assertEquals(2, saves.get());
+		scheduler.shutdown();
+	}
+
+	@Test
+	//flush runs a pending save on the caller's thread without waiting
+	public void testFlushRunsPendingSave() {
+		SaveScheduler scheduler = new SaveScheduler(saves::incrementAndGet,
+				lock, DELAY * 100);
+		scheduler.requestSave();
+		scheduler.flush();
+		assertEquals(1, saves.get());
+		scheduler.flush();
+		assertEquals(1, saves.get());
+		scheduler.shutdown();
+	}
+
+	@Test
+	//flush returns only once a save already running has finished
+	public void testFlushWaitsForRunningSave() throws InterruptedException {
+		CountDownLatch started = new CountDownLatch(1);
+		SaveScheduler scheduler = new SaveScheduler(() -> {
+			started.countDown();
+			try {
+				Thread.sleep(DELAY * 4);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			saves.incrementAndGet();
+		}, lock, 0);
+		scheduler.requestSave();
+		started.await(DELAY * 20, TimeUnit.MILLISECONDS);
+		scheduler.flush();
+		assertEquals(1, saves.get());
+		scheduler.shutdown();
+	}
+
+	@Test
+	//shutdown saves what is pending and ignores requests made after it
+	public void testShutdownIgnoresLaterRequests()
+			throws InterruptedException {
+		SaveScheduler scheduler = new SaveScheduler(saves::incrementAndGet,
+				lock, DELAY);
+		scheduler.requestSave();
+		scheduler.shutdown();
+		assertEquals(1, saves.get());
+		scheduler.requestSave();
+		Thread.sleep(DELAY * 4);
+		scheduler.flush();
+		assertEquals(1, saves.get());
+	}
+}
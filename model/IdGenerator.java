@@ -1,30 +1,74 @@
 package model;
 
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.TreeMap;
 
+import storage.AtomicFile;
+import storage.Journal;
+
+/**
+ * The id registry, shared by the whole process. Id.txt is read once, when 
+ * the registry is first used, and the registry is kept in memory after. 
+ * Changes are appended to a journal beside Id.txt as allocate, add and 
+ * free records, and Id.txt is only rewritten once the journal is full.
+ */
 public class IdGenerator {
 	
 	private static final Charset CHAR_SET = Charset.forName("US-ASCII");
+	private static final String JOURNAL_SUFFIX = ".log";
+	private static final String RECORD_ALLOCATE = "alloc ";
+	private static final String RECORD_ADD = "add ";
+	private static final String RECORD_FREE = "free ";
+	
+	private static IdGenerator instance;
+	
+	private static final int MAX_ID = Integer.MAX_VALUE;
 	
 	private int base36Id;
 	private TreeMap<Integer, String> idBank;
+	// Bit i is set if id i is in idBank, so a free id is found a word at a time
+	private BitSet usedIds = new BitSet();
 	private Path filePath;
+	private Journal journal;
+	
+	/**
+	 * Returns the shared registry, loading it from Id.txt on first use.
+	 * 
+	 * @return the IdGenerator instance.
+	 */
+	public static synchronized IdGenerator getInstance() {
+		if (instance == null) {
+			instance = new IdGenerator();
+		}
+		return instance;
+	}
+	
+	private IdGenerator() {
+		this(Paths.get(System.getProperty("user.dir") + "/Id.txt")
+				.toAbsolutePath());
+	}
 	
-	public IdGenerator() {
-		String dirPath = System.getProperty("user.dir");
-		filePath = Paths.get(dirPath + "/Id.txt").toAbsolutePath();
+	/**
+	 * Loads a registry kept in the file at filePath and its journal. Only 
+	 * getInstance and the tests make one.
+	 * 
+	 * @param filePath the path to the registry file.
+	 */
+	IdGenerator(Path filePath) {
+		this.filePath = filePath;
 		File idFile = filePath.toFile(); 
-		if (idFile.exists() && idFile.length() > 0) {
+		boolean hasFile = idFile.exists() && idFile.length() > 0;
+		if (hasFile) {
 			try {
 				BufferedReader reader = Files.newBufferedReader(filePath);
 				String line = reader.readLine();
@@ -34,7 +78,7 @@ public class IdGenerator {
 				while (line != null) {
 					String[] splitLine = line.split(" ");
 					int key = idStringToIntId(splitLine[0]);
-					idBank.put(key, line.substring(splitLine[0].length() + 1));
+					putId(key, line.substring(splitLine[0].length() + 1));
 					line = reader.readLine();
 				}
 				reader.close();
@@ -45,65 +89,195 @@ public class IdGenerator {
 		else {
 			base36Id = 0;
 			idBank = new TreeMap<Integer, String>();
+		}
+		journal = new Journal(Paths.get(filePath + JOURNAL_SUFFIX));
+		replayJournal();
+		if (!hasFile) {
 			save();
 		}
 	}
+	
+	/**
+	 * Applies the records in the journal, if there is one, on top of what 
+	 * was read from Id.txt. Every record can be applied twice safely.
+	 */
+	private void replayJournal() {
+		if (!journal.exists()) {
+			return;
+		}
+		try (BufferedReader reader = Files.newBufferedReader(
+				journal.getFilePath())) {
+			String line = reader.readLine();
+			while (line != null) {
+				if (line.startsWith(RECORD_FREE)) {
+					freeId(idStringToIntId(
+							line.substring(RECORD_FREE.length())));
+				}
+				else if (line.startsWith(RECORD_ALLOCATE)) {
+					int id = replayAdd(line.substring(RECORD_ALLOCATE.length()));
+					base36Id = id + 1;
+				}
+				else if (line.startsWith(RECORD_ADD)) {
+					replayAdd(line.substring(RECORD_ADD.length()));
+				}
+				line = reader.readLine();
+			}
+		} catch (IOException error) {
+			System.err.println(error);
+		}
+	}
+	
+	private int replayAdd(String idAndName) {
+		int space = idAndName.indexOf(' ');
+		int id = idStringToIntId(idAndName.substring(0, space));
+		putId(id, idAndName.substring(space + 1));
+		return id;
+	}
 
-	public void addId(int id, String name) {
-		idBank.put(id, name);
-		save();
+	public synchronized void addId(int id, String name) {
+		putId(id, name);
+		record(RECORD_ADD, id, name);
+		commit();
+	}
+	
+	public synchronized void removeId(String idString) {
+		freeId(idStringToIntId(idString));
+		journal.record(RECORD_FREE + idString + System.lineSeparator());
+		commit();
 	}
 	
-	public void removeId(String idString) {
-		idBank.remove(idStringToIntId(idString));
-		save();
+	/**
+	 * Adds all the ids with their task names and saves once.
+	 * 
+	 * @param ids the task names keyed by id.
+	 */
+	public synchronized void addIds(Map<Integer, String> ids) {
+		if (ids.isEmpty()) {
+			return;
+		}
+		for (Entry<Integer, String> entry : ids.entrySet()) {
+			putId(entry.getKey(), entry.getValue());
+			record(RECORD_ADD, entry.getKey(), entry.getValue());
+		}
+		commit();
 	}
 	
-	public String generateId(String taskName) {
-		boolean flag = false;
-		while (isExistingId(base36Id)) {
-			base36Id++; // If Id already exists, increment to generate new Id
-			if (base36Id >= 2147483647 && flag == true) {
+	/**
+	 * Removes all the ids and saves once. Null ids are skipped.
+	 * 
+	 * @param idStrings the ids to remove.
+	 */
+	public synchronized void removeIds(Collection<String> idStrings) {
+		boolean isChanged = false;
+		for (String idString : idStrings) {
+			if (idString != null 
+					&& freeId(idStringToIntId(idString))) {
+				journal.record(RECORD_FREE + idString + System.lineSeparator());
+				isChanged = true;
+			}
+		}
+		if (isChanged) {
+			commit();
+		}
+	}
+	
+	public synchronized String generateId(String taskName) {
+		// First free id from the last one generated, wrapping around once
+		int id = usedIds.nextClearBit(base36Id);
+		if (id >= MAX_ID) {
+			id = usedIds.nextClearBit(0);
+			if (id >= MAX_ID) {
 				System.out.println("maximum task limit exceeded");
 				return null;
 			}
-			if (base36Id >= 2147483647) {
-				base36Id = 0;
-				flag = true;
-			}
 		}
-		int id = base36Id;
-		addId(id, taskName);
-		base36Id++;
-		save();
+		putId(id, taskName);
+		base36Id = id + 1;
+		record(RECORD_ALLOCATE, id, taskName);
+		commit();
 		return ("@").concat(Integer.toString(id, 36));
 	}
 	
-	public boolean isExistingId(int id) {
-		return idBank.containsKey(id);
+	public synchronized boolean isExistingId(int id) {
+		return id >= 0 && usedIds.get(id);
 	}
 	
-	public boolean isExistingId(String idString) {
-		return idBank.containsKey(idStringToIntId(idString));
+	public synchronized boolean isExistingId(String idString) {
+		return isExistingId(idStringToIntId(idString));
 	}
 	
-	public void save() {
-		try (BufferedWriter writer = Files.newBufferedWriter(filePath, 
-                CHAR_SET, StandardOpenOption.CREATE, 
-                StandardOpenOption.WRITE, 
-                StandardOpenOption.SYNC,
-                StandardOpenOption.TRUNCATE_EXISTING)) {
-			writer.write(base36IdToString());
-			writer.newLine();
-			for (Entry<Integer, String> entry : idBank.entrySet()) {
-			    writer.write(keyIdToString(entry.getKey()) + " " + entry.getValue());
-			    writer.newLine();
-			}
+	private void putId(int id, String name) {
+		idBank.put(id, name);
+		if (id >= 0) {
+			usedIds.set(id);
+		}
+	}
+	
+	private boolean freeId(int id) {
+		if (id < 0 || !usedIds.get(id)) {
+			return false;
+		}
+		idBank.remove(id);
+		usedIds.clear(id);
+		return true;
+	}
+	
+	/**
+	 * Writes the whole registry to Id.txt and empties the journal.
+	 */
+	public synchronized void save() {
+		try {
+			AtomicFile.write(filePath, CHAR_SET, writer -> {
+				writer.write(base36IdToString());
+				writer.newLine();
+				for (Entry<Integer, String> entry : idBank.entrySet()) {
+				    writer.write(keyIdToString(entry.getKey()) + " " + entry.getValue());
+				    writer.newLine();
+				}
+			});
+			journal.delete();
 		} catch (IOException error) {
 			System.err.println(error);
 		}
 	}
 	
+	private void record(String type, int id, String name) {
+		journal.record(type + keyIdToString(id) + " " + name 
+				       + System.lineSeparator());
+	}
+	
+	/**
+	 * Appends the recorded changes to the journal in one write, and folds 
+	 * the journal into Id.txt once it has grown past its checkpoint size. 
+	 * A journal in a CommitLog is left to be committed with the vaults.
+	 */
+	private void commit() {
+		if (journal.isGrouped()) {
+			return;
+		}
+		journal.flush();
+		checkpoint();
+	}
+	
+	/**
+	 * Folds the journal into Id.txt if it has grown past its checkpoint 
+	 * size.
+	 */
+	public synchronized void checkpoint() {
+		if (journal.needsCheckpoint()) {
+			save();
+		}
+	}
+	
+	/**
+	 * Returns the journal the registry is persisted through.
+	 * 
+	 * @return the Journal object.
+	 */
+	public Journal getJournal() {
+		return journal;
+	}
+	
 	private String keyIdToString(int key) {
 		return "@" + Integer.toString(key, 36);
 	}
@@ -116,7 +290,7 @@ public class IdGenerator {
 		return Integer.parseInt(idString.substring(1), 36);
 	}
 	
-	public String getTaskName(String idString){
+	public synchronized String getTaskName(String idString){
 		return idBank.get(Integer.parseInt(idString.substring(1), 36));
 	}
 }
@@ -0,0 +1,91 @@
+package model;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class IdGeneratorTest {
+
+	private static final Charset CHAR_SET = Charset.forName("US-ASCII");
+	private static final String NEW_LINE = System.lineSeparator();
+
+	private Path filePath;
+	private Path journalPath;
+
+	@Before
+	public void setUpTestEnv() throws IOException {
+		String dirPath = System.getProperty("user.dir");
+		filePath = Paths.get(dirPath, "IdTest.txt").toAbsolutePath();
+		journalPath = Paths.get(filePath + ".log");
+		tearDownTestEnv();
+	}
+
+	@After
+	public void tearDownTestEnv() throws IOException {
+		Files.deleteIfExists(filePath);
+		Files.deleteIfExists(journalPath);
+	}
+
+	/**
+	 * Testing that ids allocated and freed since Id.txt was last written are
+	 * read back from the journal alone when the process dies without a
+	 * checkpoint.
+	 */
+	@Test
+	public void testJournalReplayedAfterCrash() throws IOException {
+		IdGenerator generator = new IdGenerator(filePath);
+		byte[] saved = Files.readAllBytes(filePath);
+		assertEquals("@0", generator.generateId("first"));
+		assertEquals("@1", generator.generateId("second"));
+		generator.removeId("@0");
+		assertTrue(Files.exists(journalPath));
+		assertArrayEquals(saved, Files.readAllBytes(filePath));
+		// Dropped without saving, as if the process had died
+		IdGenerator reopened = new IdGenerator(filePath);
+		assertFalse(reopened.isExistingId("@0"));
+		assertEquals("second", reopened.getTaskName("@1"));
+		assertEquals("@2", reopened.generateId("third"));
+	}
+
+	/**
+	 * Testing that an id freed below the last one generated is not handed
+	 * out again before the ids above it.
+	 */
+	@Test
+	public void testFreedLowIdNotReusedFirst() {
+		IdGenerator generator = new IdGenerator(filePath);
+		assertEquals("@0", generator.generateId("first"));
+		assertEquals("@1", generator.generateId("second"));
+		assertEquals("@2", generator.generateId("third"));
+		generator.removeId("@1");
+		assertEquals("@3", generator.generateId("fourth"));
+		assertFalse(generator.isExistingId("@1"));
+		assertTrue(generator.isExistingId("@3"));
+	}
+
+	/**
+	 * Testing that once the last id generated is the largest one, the
+	 * lowest free id is generated next.
+	 */
+	@Test
+	public void testGenerateWrapsAround() throws IOException {
+		String maxId = "@" + Integer.toString(Integer.MAX_VALUE, 36);
+		Files.write(filePath, (maxId + NEW_LINE + "@0 first" + NEW_LINE
+				               + "@2 third" + NEW_LINE).getBytes(CHAR_SET));
+		IdGenerator generator = new IdGenerator(filePath);
+		assertEquals("@1", generator.generateId("second"));
+		assertEquals("@3", generator.generateId("fourth"));
+		assertEquals("first", generator.getTaskName("@0"));
+	}
+}
@@ -4,6 +4,7 @@ import java.time.LocalDate;
 import java.time.LocalTime;
 import java.time.LocalDateTime;
 
+import javafx.beans.InvalidationListener;
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.property.SimpleStringProperty;
@@ -37,6 +38,21 @@ public class Task implements Comparable<Object> {
 	private final String DATELINE = "dateline";
 	private final String FLOAT = "float";
 
+	private static final long SECONDS_PER_DAY = 86400;
+	// Sort key of floating tasks, after every dated one
+	private static final long FLOATING_KEY = Long.MAX_VALUE;
+	// Sort key of tasks with an end time but no start to compare by
+	private static final long MISSING_KEY = Long.MIN_VALUE;
+
+	// Start as seconds since the epoch and nanoseconds, cached for compareTo
+	private long sortKey;
+	private int sortNano;
+	private boolean isSortKeyValid;
+	// Listened to on first use, as RecurringTask replaces the properties
+	private boolean isListeningForSortKey;
+	private final InvalidationListener sortKeyInvalidator = 
+			observable -> isSortKeyValid = false;
+
 	/**
 	 * Default constructor.
 	 */
@@ -273,6 +289,22 @@ public class Task implements Comparable<Object> {
 	 */
 	public int compareTo(Object obj) {
 		Task task = (Task) obj;
+		long key = getSortKey();
+		long otherKey = task.getSortKey();
+		if (key != MISSING_KEY && otherKey != MISSING_KEY) {
+			if (key != otherKey) {
+				return key < otherKey ? EARLIER : LATER;
+			}
+			return Integer.compare(sortNano, task.sortNano);
+		}
+		return compareByType(task);
+	}
+
+	/**
+	 * Compares the tasks by type and then by start, which fails for tasks
+	 * that are not floating but have no start.
+	 */
+	private int compareByType(Task task) {
 		if (this.getType() == FLOAT && task.getType() == FLOAT) {
 			return SAME;
 		} else if (this.getType() == FLOAT) {
@@ -303,6 +335,39 @@ public class Task implements Comparable<Object> {
 		}
 	}
 
+	/**
+	 * Returns the start as seconds since the epoch, FLOATING_KEY for 
+	 * floating tasks or MISSING_KEY for other tasks without a start, with 
+	 * the nanoseconds of the start left in sortNano. The key is computed 
+	 * once and kept until the start date, start time or end time changes.
+	 *
+	 * @return the sort key.
+	 */
+	private long getSortKey() {
+		if (isSortKeyValid) {
+			return sortKey;
+		}
+		if (!isListeningForSortKey) {
+			startDate.addListener(sortKeyInvalidator);
+			startTime.addListener(sortKeyInvalidator);
+			endTime.addListener(sortKeyInvalidator);
+			isListeningForSortKey = true;
+		}
+		LocalDate date = startDate.get();
+		LocalTime time = startTime.get();
+		sortNano = 0;
+		if (getType() == FLOAT) {
+			sortKey = FLOATING_KEY;
+		} else if (date == null || time == null) {
+			sortKey = MISSING_KEY;
+		} else {
+			sortKey = date.toEpochDay() * SECONDS_PER_DAY + time.toSecondOfDay();
+			sortNano = time.getNano();
+		}
+		isSortKeyValid = true;
+		return sortKey;
+	}
+
 	/**
 	 * Returns the LocalDateTime from LocalDate and LocalTime of task.
 	 *
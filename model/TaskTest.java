@@ -0,0 +1,86 @@
+package model;
+
+import static org.junit.Assert.assertEquals;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TaskTest {
+
+	private static final LocalDate DAY = LocalDate.of(2015, 3, 12);
+
+	/**
+	 * Testing that tasks sort as they did when compared by LocalDateTime,
+	 * floating tasks last, and still do after a start is edited.
+	 */
+	@Test
+	public void testCompareToMatchesLocalDateTime() {
+		Task floating = new Task("floating", null, null, null, null, null);
+		Task otherFloating = new Task("other", null, null, null, null, null);
+		Task dateline = new Task("dateline", null, DAY, LocalTime.of(9, 30),
+				                 null, null);
+		Task event = new Task("event", null, DAY, LocalTime.of(9, 30),
+				              DAY, LocalTime.of(11, 0));
+		Task early = new Task("early", null, DAY, LocalTime.of(8, 0),
+				              DAY, LocalTime.of(8, 30));
+		Task later = new Task("later", null, DAY.plusDays(1),
+				              LocalTime.of(0, 0), null, null);
+		Task precise = new Task("precise", null, DAY,
+				                LocalTime.of(9, 30, 0, 1), null, null);
+		Task recurring = new RecurringTask(new Task("recurring", null,
+				DAY.minusDays(1), LocalTime.of(23, 59), null, null), 1);
+		List<Task> tasks = new ArrayList<Task>(Arrays.asList(floating, later,
+				event, precise, otherFloating, early, dateline, recurring));
+		assertOrderMatches(tasks);
+		Collections.sort(tasks);
+		assertEquals(Arrays.asList(recurring, early, event, dateline, precise,
+				                   later), tasks.subList(0, 6));
+
+		// Editing a start, a type and a recurring start after sorting once
+		later.setStartDate(DAY.minusDays(2));
+		floating.setStartDate(DAY);
+		floating.setStartTime(LocalTime.of(10, 0));
+		event.setEndTime(null);
+		event.setStartTime(LocalTime.of(12, 0));
+		recurring.setStartTime(LocalTime.of(0, 0));
+		assertOrderMatches(tasks);
+		Collections.sort(tasks);
+		assertEquals(Arrays.asList(later, recurring, early, dateline, precise,
+				                   floating, event), tasks.subList(0, 7));
+		assertEquals(otherFloating, tasks.get(7));
+	}
+
+	/**
+	 * Checks compareTo against the LocalDateTime comparison for every pair.
+	 */
+	private static void assertOrderMatches(List<Task> tasks) {
+		for (Task first : tasks) {
+			for (Task second : tasks) {
+				assertEquals(first.getTaskName() + " to "
+						     + second.getTaskName(),
+						     compareByDateTime(first, second),
+						     Integer.signum(first.compareTo(second)));
+			}
+		}
+	}
+
+	private static int compareByDateTime(Task first, Task second) {
+		boolean isFirstFloating = first.getType().equals("float");
+		boolean isSecondFloating = second.getType().equals("float");
+		if (isFirstFloating || isSecondFloating) {
+			return Boolean.compare(isFirstFloating, isSecondFloating);
+		}
+		LocalDateTime firstStart = LocalDateTime.of(first.getStartDate(),
+				                                    first.getStartTime());
+		LocalDateTime secondStart = LocalDateTime.of(second.getStartDate(),
+				                                     second.getStartTime());
+		return Integer.signum(firstStart.compareTo(secondStart));
+	}
+}
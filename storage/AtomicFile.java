@@ -0,0 +1,160 @@
+package storage;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * AtomicFile class.
+ * Durable file writes that cost a constant number of synchronous I/Os. The
+ * data is written at full speed and forced to the device once, instead of
+ * syncing on every buffer flush as StandardOpenOption.SYNC does.
+ *
+ * @author Qiyuan
+ */
+public class AtomicFile {
+
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	/**
+	 * Text content to be written to a file.
+	 */
+	public interface Content {
+		void writeTo(BufferedWriter writer) throws IOException;
+	}
+
+	/**
+	 * Binary content to be written to a file.
+	 */
+	public interface BinaryContent {
+		void writeTo(DataOutputStream output) throws IOException;
+	}
+
+	private AtomicFile() {
+	}
+
+	/**
+	 * Replaces the file at target with the content. The content is written
+	 * to a temporary file, forced once, renamed over target and then the
+	 * directory is forced so the rename itself is durable. A crash leaves
+	 * either the old or the new file, never a partial one.
+	 *
+	 * @param target          the path to the file.
+	 * @param charSet         the charset to encode the content with.
+	 * @param content         the content to write.
+	 * @throws IOException    if the write fails.
+	 */
+	public static void write(Path target, Charset charSet, Content content)
+			throws IOException {
+		write(target, toBinary(charSet, content));
+	}
+
+	/**
+	 * Replaces the file at target with the binary content in the same way
+	 * as the text version of write.
+	 *
+	 * @param target          the path to the file.
+	 * @param content         the content to write.
+	 * @throws IOException    if the write fails.
+	 */
+	public static void write(Path target, BinaryContent content)
+			throws IOException {
+		Path tempPath = Paths.get(target + TEMP_SUFFIX);
+		writeAndForce(tempPath, content, StandardOpenOption.TRUNCATE_EXISTING);
+		move(tempPath, target);
+	}
+
+	/**
+	 * Renames source to target, replacing target if it exists, and forces
+	 * the directory so the rename is durable.
+	 *
+	 * @param source          the path to the file to rename.
+	 * @param target          the new path of the file.
+	 * @throws IOException    if the rename fails.
+	 */
+	public static void move(Path source, Path target) throws IOException {
+		try {
+			Files.move(source, target, StandardCopyOption.ATOMIC_MOVE,
+					   StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException error) {
+			Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+		forceDirectory(target.toAbsolutePath().getParent());
+	}
+
+	/**
+	 * Appends the content to the file at target and forces it once.
+	 *
+	 * @param target          the path to the file.
+	 * @param charSet         the charset to encode the content with.
+	 * @param content         the content to append.
+	 * @throws IOException    if the write fails.
+	 */
+	public static void append(Path target, Charset charSet, Content content)
+			throws IOException {
+		boolean isNewFile = !target.toFile().exists();
+		writeAndForce(target, toBinary(charSet, content),
+				      StandardOpenOption.APPEND);
+		if (isNewFile) {
+			forceDirectory(target.toAbsolutePath().getParent());
+		}
+	}
+
+	/**
+	 * Adapts text content so that it is encoded with charSet.
+	 */
+	private static BinaryContent toBinary(Charset charSet, Content content) {
+		return output -> {
+			BufferedWriter writer = new BufferedWriter(
+					new OutputStreamWriter(output, charSet));
+			content.writeTo(writer);
+			writer.flush();
+		};
+	}
+
+	/**
+	 * Writes the content through a buffered stream and forces the file
+	 * once everything has been written.
+	 */
+	private static void writeAndForce(Path path, BinaryContent content,
+			                          StandardOpenOption mode)
+			                          throws IOException {
+		try (FileChannel channel = FileChannel.open(path,
+				                       StandardOpenOption.CREATE,
+				                       StandardOpenOption.WRITE, mode)) {
+			DataOutputStream output = new DataOutputStream(
+					new BufferedOutputStream(Channels.newOutputStream(channel)));
+			content.writeTo(output);
+			output.flush();
+			channel.force(true);
+		}
+	}
+
+	/**
+	 * Forces the directory entry so that renames and newly created files
+	 * survive a crash. Some platforms cannot open a directory, in which
+	 * case this does nothing.
+	 */
+	private static void forceDirectory(Path dirPath) {
+		if (dirPath == null) {
+			return;
+		}
+		try (FileChannel channel = FileChannel.open(dirPath,
+				                       StandardOpenOption.READ)) {
+			channel.force(true);
+		} catch (IOException error) {
+			// Directories cannot be opened for sync on this platform.
+		}
+	}
+}
@@ -0,0 +1,316 @@
+package storage;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * CommitLog class.
+ * A log shared by several journals, so that the changes one command makes
+ * to several vaults and to the id registry become durable together. A
+ * commit appends one batch holding the pending records of every journal
+ * and forces the log once. The records are then appended to the journals
+ * themselves without forcing them, between begin and commit markers.
+ *
+ * At a checkpoint, any batch a journal is missing is copied into it, the
+ * journals are forced and the log is deleted. Running a checkpoint at
+ * startup therefore recovers the journals after a crash, so that they all
+ * end on the same batch.
+ *
+ * @author Qiyuan
+ */
+public class CommitLog {
+
+	static final String BEGIN_SPACE = "begin ";
+	static final String COMMIT_SPACE = "commit ";
+	private static final Charset CHAR_SET = Charset.forName("US-ASCII");
+	private static final long CHECKPOINT_SIZE = 1024 * 1024;
+	private static final int RADIX = 36;
+
+	private final Path filePath;
+	private final List<Journal> journals;
+	// Distinguishes the transactions of this run from those of earlier runs
+	private final String session;
+	private long transactionCount;
+
+	/**
+	 * Constructs a CommitLog object that appends to the file at filePath.
+	 *
+	 * @param filePath    the path to the log file.
+	 */
+	public CommitLog(Path filePath) {
+		this.filePath = filePath;
+		journals = new ArrayList<Journal>();
+		session = Long.toString(new Random().nextLong() & Long.MAX_VALUE,
+				                RADIX);
+	}
+
+	/**
+	 * Adds a journal to those committed by this log. A journal for the same
+	 * file as one already added takes its place.
+	 *
+	 * @param journal    the journal to add.
+	 */
+	public synchronized void register(Journal journal) {
+		Iterator<Journal> iterator = journals.iterator();
+		while (iterator.hasNext()) {
+			if (iterator.next().getFilePath().equals(journal.getFilePath())) {
+				iterator.remove();
+			}
+		}
+		journals.add(journal);
+		journal.setCommitLog(this);
+	}
+
+	/**
+	 * Returns true if any of the journals has records to commit.
+	 *
+	 * @return    true if there are pending records.
+	 */
+	public synchronized boolean hasPending() {
+		for (Journal journal : journals) {
+			if (journal.hasPending()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Commits the pending records of every journal as one batch with a
+	 * single forced write, then appends them to the journals.
+	 */
+	public synchronized void commit() {
+		String lineSeparator = System.lineSeparator();
+		String transaction = session + "-" + (transactionCount + 1);
+		List<Journal> committed = new ArrayList<Journal>();
+		List<String> records = new ArrayList<String>();
+		StringBuilder batch = new StringBuilder();
+		batch.append(BEGIN_SPACE + transaction + lineSeparator);
+		for (Journal journal : journals) {
+			if (journal.hasPending()) {
+				String pendingRecords = journal.getPendingRecords();
+				committed.add(journal);
+				records.add(pendingRecords);
+				batch.append(pendingRecords.length() + " "
+						     + journal.getFilePath().toAbsolutePath()
+						     + lineSeparator);
+				batch.append(pendingRecords);
+			}
+		}
+		if (committed.isEmpty()) {
+			return;
+		}
+		batch.append(COMMIT_SPACE + transaction + lineSeparator);
+		try {
+			AtomicFile.append(filePath, CHAR_SET,
+					          writer -> writer.write(batch.toString()));
+		} catch (IOException error) {
+			System.err.format("%s%n", error);
+			return;
+		}
+		transactionCount++;
+		for (int i = 0; i < committed.size(); i++) {
+			Journal journal = committed.get(i);
+			journal.clearPending();
+			try {
+				ship(journal.getFilePath(), records.get(i), transaction);
+			} catch (IOException error) {
+				// The batch is durable in the log and is copied at checkpoint
+				System.err.format("%s%n", error);
+			}
+		}
+		if (filePath.toFile().length() >= CHECKPOINT_SIZE) {
+			checkpoint();
+		}
+	}
+
+	/**
+	 * Copies every committed batch into the journals that are missing it,
+	 * cutting off any partly appended batch first, then forces the journals
+	 * and deletes the log. Called at startup to recover from a crash, and
+	 * before a journal is deleted or sealed.
+	 */
+	public synchronized void checkpoint() {
+		if (!filePath.toFile().exists()) {
+			return;
+		}
+		try {
+			Map<Path, Set<String>> shipped = new LinkedHashMap<Path, Set<String>>();
+			for (Batch batch : readBatches()) {
+				for (Map.Entry<Path, String> entry : batch.records.entrySet()) {
+					Path journalPath = entry.getKey();
+					if (!shipped.containsKey(journalPath)) {
+						shipped.put(journalPath, repair(journalPath));
+					}
+					if (shipped.get(journalPath).add(batch.transaction)) {
+						ship(journalPath, entry.getValue(), batch.transaction);
+					}
+				}
+			}
+			for (Path journalPath : shipped.keySet()) {
+				force(journalPath);
+			}
+			Files.delete(filePath);
+		} catch (IOException error) {
+			System.err.format("%s%n", error);
+		}
+	}
+
+	/**
+	 * A batch read back from the log.
+	 */
+	private static class Batch {
+		private String transaction;
+		private Map<Path, String> records = new LinkedHashMap<Path, String>();
+	}
+
+	/**
+	 * Reads the complete batches in the log. A batch cut short by a crash
+	 * has no commit marker and is left out.
+	 */
+	private List<Batch> readBatches() throws IOException {
+		String log = new String(Files.readAllBytes(filePath), CHAR_SET);
+		List<Batch> batches = new ArrayList<Batch>();
+		int position = 0;
+		while (position < log.length()) {
+			int lineEnd = log.indexOf('\n', position);
+			if (lineEnd < 0) {
+				break;
+			}
+			String line = stripReturn(log.substring(position, lineEnd));
+			position = lineEnd + 1;
+			if (!line.startsWith(BEGIN_SPACE)) {
+				break;
+			}
+			Batch batch = new Batch();
+			batch.transaction = line.substring(BEGIN_SPACE.length());
+			position = readBatch(log, position, batch);
+			if (position < 0) {
+				break;
+			}
+			batches.add(batch);
+		}
+		return batches;
+	}
+
+	/**
+	 * Reads the records of a batch up to its commit marker and returns the
+	 * position after the marker, or -1 if the batch is incomplete.
+	 */
+	private int readBatch(String log, int position, Batch batch) {
+		while (position < log.length()) {
+			int lineEnd = log.indexOf('\n', position);
+			if (lineEnd < 0) {
+				return -1;
+			}
+			String line = stripReturn(log.substring(position, lineEnd));
+			position = lineEnd + 1;
+			if (line.equals(COMMIT_SPACE + batch.transaction)) {
+				return position;
+			}
+			int space = line.indexOf(' ');
+			if (space < 0) {
+				return -1;
+			}
+			int length;
+			try {
+				length = Integer.parseInt(line.substring(0, space));
+			} catch (NumberFormatException error) {
+				return -1;
+			}
+			if (length < 0 || position + length > log.length()) {
+				return -1;
+			}
+			batch.records.put(Paths.get(line.substring(space + 1)),
+					          log.substring(position, position + length));
+			position += length;
+		}
+		return -1;
+	}
+
+	/**
+	 * Cuts off a batch left half appended at the end of the journal and
+	 * returns the transactions the journal holds completely. A batch only
+	 * ends at the commit marker of its own transaction, since a record
+	 * line such as a task name may itself start with "commit ".
+	 */
+	private static Set<String> repair(Path journalPath) throws IOException {
+		Set<String> transactions = new HashSet<String>();
+		if (!journalPath.toFile().exists()) {
+			return transactions;
+		}
+		String journal = new String(Files.readAllBytes(journalPath), CHAR_SET);
+		int openBegin = -1;
+		String openTransaction = null;
+		int position = 0;
+		while (position < journal.length()) {
+			int lineEnd = journal.indexOf('\n', position);
+			if (lineEnd < 0) {
+				break;
+			}
+			String line = stripReturn(journal.substring(position, lineEnd));
+			if (openTransaction == null) {
+				if (line.startsWith(BEGIN_SPACE)) {
+					openBegin = position;
+					openTransaction = line.substring(BEGIN_SPACE.length());
+				}
+			}
+			else if (line.equals(COMMIT_SPACE + openTransaction)) {
+				transactions.add(openTransaction);
+				openBegin = -1;
+				openTransaction = null;
+			}
+			position = lineEnd + 1;
+		}
+		if (openBegin >= 0) {
+			try (FileChannel channel = FileChannel.open(journalPath,
+					                       StandardOpenOption.WRITE)) {
+				channel.truncate(openBegin);
+			}
+		}
+		return transactions;
+	}
+
+	/**
+	 * Appends committed records to a journal, without forcing them, between
+	 * begin and commit markers for the transaction.
+	 */
+	private static void ship(Path journalPath, String records,
+			                 String transaction) throws IOException {
+		String lineSeparator = System.lineSeparator();
+		String block = BEGIN_SPACE + transaction + lineSeparator + records
+				       + COMMIT_SPACE + transaction + lineSeparator;
+		Files.write(journalPath, block.getBytes(CHAR_SET),
+				    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+	}
+
+	private static void force(Path journalPath) throws IOException {
+		if (!journalPath.toFile().exists()) {
+			return;
+		}
+		try (FileChannel channel = FileChannel.open(journalPath,
+				                       StandardOpenOption.WRITE)) {
+			channel.force(true);
+		}
+	}
+
+	private static String stripReturn(String line) {
+		if (line.endsWith("\r")) {
+			return line.substring(0, line.length() - 1);
+		}
+		return line;
+	}
+}
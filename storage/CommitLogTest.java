@@ -0,0 +1,135 @@
+package storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CommitLogTest {
+	private static final Charset CHAR_SET = Charset.forName("US-ASCII");
+	private static final String NEW_LINE = System.lineSeparator();
+	private static final String STORE = "store" + NEW_LINE;
+	private static final String REMOVE = "remove task" + NEW_LINE;
+
+	private Path logPath;
+	private Path journalPath;
+
+	@Before
+	public void setUpTestEnv() throws IOException {
+		String dirPath = System.getProperty("user.dir");
+		logPath = Paths.get(dirPath, "test.commit.log").toAbsolutePath();
+		journalPath = Paths.get(dirPath, "test.txt.log").toAbsolutePath();
+		tearDownTestEnv();
+	}
+
+	@After
+	public void tearDownTestEnv() throws IOException {
+		Files.deleteIfExists(logPath);
+		if (Files.isDirectory(journalPath)) {
+			Files.delete(journalPath);
+		}
+		Files.deleteIfExists(journalPath);
+	}
+
+	/**
+	 * Testing that a batch cut short before its commit marker is left out
+	 * of the journal, while the complete batch before it is copied in.
+	 */
+	@Test
+	public void testUncommittedBatchDropped() throws IOException {
+		write(logPath, batch("a-1", STORE) + "begin a-2" + NEW_LINE
+				       + REMOVE.length() + " " + journalPath + NEW_LINE
+				       + REMOVE);
+		new CommitLog(logPath).checkpoint();
+		assertEquals(block("a-1", STORE), read(journalPath));
+		assertFalse(Files.exists(logPath));
+	}
+
+	/**
+	 * Testing that a batch half appended to the journal is cut off and
+	 * appended again whole, and that a batch the journal already holds is
+	 * not appended twice.
+	 */
+	@Test
+	public void testHalfWrittenBatchRepaired() throws IOException {
+		write(journalPath, block("a-1", STORE) + "begin a-2" + NEW_LINE
+				           + "remo");
+		write(logPath, batch("a-1", STORE) + batch("a-2", REMOVE));
+		new CommitLog(logPath).checkpoint();
+		assertEquals(block("a-1", STORE) + block("a-2", REMOVE),
+				     read(journalPath));
+	}
+
+	/**
+	 * Testing that a record line starting like a commit marker does not
+	 * end a half-written batch, so the batch is still cut off and appended
+	 * again whole.
+	 */
+	@Test
+	public void testTornBatchWithCommitLikeRecord() throws IOException {
+		String records = STORE + "commit to gym" + NEW_LINE + "null" + NEW_LINE;
+		write(journalPath, block("a-1", STORE) + "begin a-2" + NEW_LINE
+				           + STORE + "commit to gym" + NEW_LINE);
+		write(logPath, batch("a-1", STORE) + batch("a-2", records));
+		new CommitLog(logPath).checkpoint();
+		assertEquals(block("a-1", STORE) + block("a-2", records),
+				     read(journalPath));
+	}
+
+	/**
+	 * Testing that a committed batch which could not be appended to its
+	 * journal is copied in when the journal is recovered.
+	 */
+	@Test
+	public void testMissingBatchCopiedAtCheckpoint() throws IOException {
+		CommitLog commitLog = new CommitLog(logPath);
+		Journal journal = new Journal(journalPath);
+		commitLog.register(journal);
+		// Appending to a directory fails, so the batch only reaches the log
+		Files.createDirectory(journalPath);
+		journal.record(STORE);
+		journal.flush();
+		assertFalse(journal.hasPending());
+		assertTrue(Files.exists(logPath));
+		Files.delete(journalPath);
+		journal.recover();
+		String records = read(journalPath);
+		assertTrue(records.startsWith(CommitLog.BEGIN_SPACE));
+		assertTrue(records.contains(NEW_LINE + STORE + CommitLog.COMMIT_SPACE));
+		assertFalse(Files.exists(logPath));
+	}
+
+	/**
+	 * Returns a batch for the journal as it is written to the log.
+	 */
+	private String batch(String transaction, String records) {
+		return CommitLog.BEGIN_SPACE + transaction + NEW_LINE
+			   + records.length() + " " + journalPath + NEW_LINE + records
+			   + CommitLog.COMMIT_SPACE + transaction + NEW_LINE;
+	}
+
+	/**
+	 * Returns a batch as it is appended to a journal.
+	 */
+	private static String block(String transaction, String records) {
+		return CommitLog.BEGIN_SPACE + transaction + NEW_LINE + records
+			   + CommitLog.COMMIT_SPACE + transaction + NEW_LINE;
+	}
+
+	private static void write(Path path, String content) throws IOException {
+		Files.write(path, content.getBytes(CHAR_SET));
+	}
+
+	private static String read(Path path) throws IOException {
+		return new String(Files.readAllBytes(path), CHAR_SET);
+	}
+}
@@ -0,0 +1,221 @@
+package storage;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Journal class.
+ * An append-only log of mutation records kept beside a data file. Records
+ * are buffered in memory as they happen and written out together in a
+ * single append when the journal is flushed. A journal that has joined a
+ * CommitLog is flushed together with the other journals of the CommitLog.
+ *
+ * @author Qiyuan
+ */
+public class Journal {
+
+	private static final Charset CHAR_SET = Charset.forName("US-ASCII");
+	private static final long CHECKPOINT_SIZE = 256 * 1024;
+
+	private Path filePath;
+	private List<String> pending;
+	private CommitLog commitLog;
+
+	/**
+	 * Constructs a Journal object that appends to the file at filePath.
+	 *
+	 * @param filePath    the path to the journal file.
+	 */
+	public Journal(Path filePath) {
+		this.filePath = filePath;
+		pending = new ArrayList<String>();
+	}
+
+	/**
+	 * Buffers a record to be appended on the next flush. The record must
+	 * already be formatted, including its trailing line separator.
+	 *
+	 * @param record    the formatted record.
+	 */
+	public void record(String record) {
+		pending.add(record);
+	}
+
+	/**
+	 * Returns true if there are records that have not been flushed.
+	 *
+	 * @return    true if there are pending records.
+	 */
+	public boolean hasPending() {
+		return !pending.isEmpty();
+	}
+
+	/**
+	 * Appends all pending records to the journal file in one write. If the 
+	 * journal has joined a CommitLog, the pending records of every journal 
+	 * in it are committed instead.
+	 */
+	public void flush() {
+		if (commitLog != null) {
+			commitLog.commit();
+			return;
+		}
+		if (pending.isEmpty()) {
+			return;
+		}
+		try {
+			AtomicFile.append(filePath, CHAR_SET, writer -> {
+				for (String record : pending) {
+					writer.write(record);
+				}
+			});
+			pending.clear();
+		} catch (IOException error) {
+			System.err.format("%s%n", error);
+		}
+	}
+
+	/**
+	 * Returns true if the journal file has grown large enough that its
+	 * records should be folded into a fresh snapshot.
+	 *
+	 * @return    true if a checkpoint is due.
+	 */
+	public boolean needsCheckpoint() {
+		return filePath.toFile().length() >= CHECKPOINT_SIZE;
+	}
+
+	/**
+	 * Renames the journal file to segmentPath, sealing its records there, 
+	 * so that the next flush starts a new journal file. Nothing is sealed 
+	 * while records are still pending.
+	 *
+	 * @param segmentPath    the path to move the journal file to.
+	 * @return               true if the journal was sealed.
+	 */
+	public boolean seal(Path segmentPath) {
+		if (hasPending() || !exists()) {
+			return false;
+		}
+		return moveTo(segmentPath);
+	}
+
+	/**
+	 * Renames the journal file, if there is one, to segmentPath ahead of a 
+	 * snapshot that holds all its records. Unlike seal, records still 
+	 * pending are allowed, since the snapshot holds them too, and they stay 
+	 * pending in case the snapshot cannot be written.
+	 *
+	 * @param segmentPath    the path to move the journal file to.
+	 * @return               true if no journal file is left behind.
+	 */
+	public boolean sealForSnapshot(Path segmentPath) {
+		recover();
+		if (!exists()) {
+			return true;
+		}
+		return moveTo(segmentPath);
+	}
+
+	/**
+	 * Copies into the journal file any committed batch that only reached 
+	 * the CommitLog, so that reading the file sees every committed record. 
+	 * Must be called before the journal file is read or sealed.
+	 */
+	public void recover() {
+		if (commitLog != null) {
+			commitLog.checkpoint();
+		}
+	}
+
+	/**
+	 * Copies in any batch the CommitLog holds for the journal, then renames 
+	 * the journal file to segmentPath.
+	 */
+	private boolean moveTo(Path segmentPath) {
+		recover();
+		try {
+			AtomicFile.move(filePath, segmentPath);
+			return true;
+		} catch (IOException error) {
+			System.err.format("%s%n", error);
+			return false;
+		}
+	}
+
+	/**
+	 * Returns true if the journal file exists.
+	 *
+	 * @return    true if the file exists.
+	 */
+	public boolean exists() {
+		return filePath.toFile().exists();
+	}
+
+	/**
+	 * Discards all pending records and deletes the journal file. Used once
+	 * the records have been captured by a snapshot.
+	 */
+	public void delete() {
+		recover();
+		pending.clear();
+		filePath.toFile().delete();
+	}
+
+	/**
+	 * Returns true if the journal has joined a CommitLog.
+	 *
+	 * @return    true if the journal is committed with others.
+	 */
+	public boolean isGrouped() {
+		return commitLog != null;
+	}
+
+	/**
+	 * Sets the CommitLog the journal is committed with.
+	 */
+	void setCommitLog(CommitLog commitLog) {
+		this.commitLog = commitLog;
+	}
+
+	/**
+	 * Returns the records that have not been flushed, joined together.
+	 *
+	 * @return    the pending records.
+	 */
+	public String getPendingRecords() {
+		StringBuilder records = new StringBuilder();
+		for (String record : pending) {
+			records.append(record);
+		}
+		return records.toString();
+	}
+
+	/**
+	 * Discards the pending records once they have been committed.
+	 */
+	void clearPending() {
+		pending.clear();
+	}
+
+	/**
+	 * Returns the filePath.
+	 *
+	 * @return    the path to the journal file.
+	 */
+	public Path getFilePath() {
+		return filePath;
+	}
+
+	/**
+	 * Sets the filePath.
+	 *
+	 * @param filePath    the new path to the journal file.
+	 */
+	public void setFilePath(Path filePath) {
+		this.filePath = filePath;
+	}
+}
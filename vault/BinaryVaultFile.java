@@ -0,0 +1,204 @@
+package vault;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalTime;
+import java.util.List;
+
+import model.RecurringTask;
+import model.Task;
+import storage.AtomicFile;
+
+/**
+ * BinaryVaultFile class.
+ * Writes vault files in the compact binary format, which MappedVaultReader
+ * reads back. A file starts with a fixed header of the magic number, the
+ * format version, the number of tasks and the number of the last journal
+ * segment folded into the file, which version 1 files do not have. Each
+ * task is then stored as a record prefixed by its length in bytes, so that
+ * a reader moves on to the next record past any fields it does not know.
+ *
+ * A record holds a flags byte saying which fields are present, followed by
+ * the present fields. Strings are stored as a length followed by UTF-8
+ * bytes, dates as epoch days and times as minutes of the day.
+ *
+ * @author Qiyuan
+ */
+class BinaryVaultFile {
+
+	// First byte is not ASCII, so a text vault file can never match
+	static final int MAGIC = 0x89434456;
+	static final short VERSION = 2;
+	static final short VERSION_1 = 1;
+	static final int HEADER_LENGTH = 10;
+
+	static final int HAS_COMMENT = 1;
+	static final int HAS_START_DATE = 1 << 1;
+	static final int HAS_START_TIME = 1 << 2;
+	static final int HAS_END_DATE = 1 << 3;
+	static final int HAS_END_TIME = 1 << 4;
+	static final int HAS_ID = 1 << 5;
+	static final int IS_RECURRING = 1 << 6;
+
+	static final int DAILY = 0;
+	static final int WEEKLY = 1;
+	static final int MONTHLY = 2;
+	static final int YEARLY = 3;
+
+	static final Charset CHAR_SET = Charset.forName("UTF-8");
+	private static final int MINUTES_PER_HOUR = 60;
+
+	private BinaryVaultFile() {
+	}
+
+	/**
+	 * Returns true if the file at filePath starts with the binary header.
+	 *
+	 * @param filePath        the path to the file.
+	 * @return                true if the file is in the binary format.
+	 * @throws IOException    if the file cannot be read.
+	 */
+	static boolean isBinaryFile(Path filePath) throws IOException {
+		try (DataInputStream input = new DataInputStream(
+				Files.newInputStream(filePath))) {
+			return input.readInt() == MAGIC;
+		} catch (EOFException error) {
+			return false;
+		}
+	}
+
+	/**
+	 * Reads the number of the last journal segment folded into the file at
+	 * filePath, or 0 if the file does not record one.
+	 *
+	 * @param filePath        the path to the file.
+	 * @return                the segment sequence of the file.
+	 * @throws IOException    if the file cannot be read.
+	 */
+	static long readSequence(Path filePath) throws IOException {
+		try (DataInputStream input = new DataInputStream(
+				Files.newInputStream(filePath))) {
+			if (input.readInt() != MAGIC || input.readShort() != VERSION) {
+				return 0;
+			}
+			input.readInt(); // task count
+			return input.readLong();
+		} catch (EOFException error) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Writes the tasks to the file at filePath, replacing it atomically.
+	 *
+	 * @param filePath        the path to the file.
+	 * @param tasks           the tasks to write.
+	 * @param sequence        the last journal segment the tasks include.
+	 * @throws IOException    if the write fails.
+	 */
+	static void write(Path filePath, List<Task> tasks, long sequence)
+			throws IOException {
+		AtomicFile.write(filePath, output -> {
+			output.writeInt(MAGIC);
+			output.writeShort(VERSION);
+			output.writeInt(tasks.size());
+			output.writeLong(sequence);
+			ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+			DataOutputStream record = new DataOutputStream(buffer);
+			for (int i = 0; i < tasks.size(); i++) {
+				buffer.reset();
+				writeTask(record, tasks.get(i));
+				output.writeInt(buffer.size());
+				buffer.writeTo(output);
+			}
+		});
+	}
+
+	private static void writeTask(DataOutputStream output, Task task)
+			throws IOException {
+		int flags = 0;
+		if (task.getComment() != null) {
+			flags |= HAS_COMMENT;
+		}
+		if (task.getStartDate() != null) {
+			flags |= HAS_START_DATE;
+		}
+		if (task.getStartTime() != null) {
+			flags |= HAS_START_TIME;
+		}
+		if (task.getEndDate() != null) {
+			flags |= HAS_END_DATE;
+		}
+		if (task.getEndTime() != null) {
+			flags |= HAS_END_TIME;
+		}
+		if (task.getId() != null) {
+			flags |= HAS_ID;
+		}
+		if (task.isRecurring()) {
+			flags |= IS_RECURRING;
+		}
+		output.writeByte(flags);
+		writeString(output, task.getTaskName());
+		if ((flags & HAS_COMMENT) != 0) {
+			writeString(output, task.getComment());
+		}
+		if ((flags & HAS_START_DATE) != 0) {
+			output.writeInt((int) task.getStartDate().toEpochDay());
+		}
+		if ((flags & HAS_START_TIME) != 0) {
+			output.writeShort(toMinuteOfDay(task.getStartTime()));
+		}
+		if ((flags & HAS_END_DATE) != 0) {
+			output.writeInt((int) task.getEndDate().toEpochDay());
+		}
+		if ((flags & HAS_END_TIME) != 0) {
+			output.writeShort(toMinuteOfDay(task.getEndTime()));
+		}
+		if ((flags & HAS_ID) != 0) {
+			writeString(output, task.getId());
+		}
+		if ((flags & IS_RECURRING) != 0) {
+			writeRecurrence(output, (RecurringTask) task);
+		}
+	}
+
+	private static void writeRecurrence(DataOutputStream output,
+			                            RecurringTask recurringTask)
+			                            throws IOException {
+		output.writeInt(recurringTask.getRecurrence());
+		if (recurringTask.isDaily()) {
+			output.writeByte(DAILY);
+		}
+		else if (recurringTask.getRecurrenceDay() != null) {
+			output.writeByte(WEEKLY);
+			output.writeByte(recurringTask.getRecurrenceDay().getValue());
+		}
+		else if (recurringTask.getDayOfMonth() > 0) {
+			output.writeByte(MONTHLY);
+			output.writeByte(recurringTask.getDayOfMonth());
+		}
+		else {
+			output.writeByte(YEARLY);
+			output.writeByte(recurringTask.getMonthDay().getMonthValue());
+			output.writeByte(recurringTask.getMonthDay().getDayOfMonth());
+		}
+	}
+
+	private static void writeString(DataOutputStream output, String string)
+			throws IOException {
+		byte[] bytes = string.getBytes(CHAR_SET);
+		output.writeInt(bytes.length);
+		output.write(bytes);
+	}
+
+	private static int toMinuteOfDay(LocalTime time) {
+		return time.getHour() * MINUTES_PER_HOUR + time.getMinute();
+	}
+}
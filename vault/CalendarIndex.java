@@ -0,0 +1,109 @@
+package vault;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import javafx.collections.ObservableList;
+import model.Task;
+
+/**
+ * CalendarIndex class.
+ * Indexes the dated tasks of an ObservableList that are not events, such
+ * as deadlines, by the epoch day they start on, so that the tasks of a
+ * range of days are found without walking the list. Events, which have a
+ * whole period, are indexed by IntervalTree instead. The day each task
+ * was filed under is remembered, so a task is removed from that day even
+ * if its start date has been changed since.
+ *
+ * @author Qiyuan
+ */
+class CalendarIndex extends ListIndex {
+
+	private final NavigableMap<Long, List<Task>> byDay;
+	// Day each task was indexed under, to remove it by
+	private final Map<Task, Long> days;
+
+	/**
+	 * Constructs a CalendarIndex object over the tasks in list and keeps it
+	 * up to date as the list changes.
+	 *
+	 * @param list    the list to index.
+	 */
+	CalendarIndex(ObservableList<Task> list) {
+		super(list);
+		byDay = new TreeMap<Long, List<Task>>();
+		days = new IdentityHashMap<Task, Long>();
+		indexList();
+	}
+
+	@Override
+	void clear() {
+		byDay.clear();
+		days.clear();
+	}
+
+	/**
+	 * Adds to found the indexed tasks that start on a day from fromDay to
+	 * toDay, both included.
+	 *
+	 * @param fromDay    the first epoch day.
+	 * @param toDay      the last epoch day.
+	 * @param found      the list to add the tasks to.
+	 */
+	void findTasks(long fromDay, long toDay, List<Task> found) {
+		if (fromDay > toDay) {
+			return;
+		}
+		for (List<Task> tasks : byDay.subMap(fromDay, true, toDay, true)
+				                     .values()) {
+			found.addAll(tasks);
+		}
+	}
+
+	/**
+	 * Returns true if the task has a whole period, and so belongs in the
+	 * IntervalTree rather than here.
+	 */
+	private static boolean isEvent(Task task) {
+		return task.getStartTime() != null && task.getEndDate() != null
+				&& task.getEndTime() != null;
+	}
+
+	@Override
+	void add(Task task) {
+		if (task.getStartDate() == null || isEvent(task)
+				|| days.containsKey(task)) {
+			return;
+		}
+		long day = task.getStartDate().toEpochDay();
+		days.put(task, day);
+		List<Task> tasks = byDay.get(day);
+		if (tasks == null) {
+			tasks = new ArrayList<Task>(1);
+			byDay.put(day, tasks);
+		}
+		tasks.add(task);
+	}
+
+	@Override
+	void remove(Task task) {
+		Long day = days.remove(task);
+		if (day == null) {
+			return;
+		}
+		List<Task> tasks = byDay.get(day);
+		for (int i = 0; i < tasks.size(); i++) {
+			if (tasks.get(i) == task) {
+				tasks.remove(i);
+				break;
+			}
+		}
+		if (tasks.isEmpty()) {
+			byDay.remove(day);
+		}
+	}
+}
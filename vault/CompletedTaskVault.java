@@ -5,8 +5,6 @@ package vault;
 import java.io.IOException;
 import java.nio.file.Paths;
 
-import javafx.collections.FXCollections;
-
 //import javafx.collections.ObservableList;
 
 /**
@@ -21,7 +19,8 @@ public class CompletedTaskVault extends Vault {
 	 * existing file in the specified directory if possible. If the file does 
 	 * not exist, it creates an empty list. The path to the directory must be 
 	 * valid and the directory must exist. Otherwise it will throw an 
-	 * IOException.
+	 * IOException. The file is only read on first access, see 
+	 * openFileLazily.
 	 * 
 	 * @param dirPath         path to the directory for file access.
 	 * @throws IOException    if path is invalid or directory does not exist.
@@ -31,10 +30,10 @@ public class CompletedTaskVault extends Vault {
 		// setFilePath(filePath);
 		fileName = "/completed.txt";
 		if (canFindFile(filePath)) {
-			openFile(filePath);
+			openFileLazily(filePath);
 		}
 		else {
-			list = FXCollections.observableArrayList();
+			list = newList();
 		}
 	}
 }
\ No newline at end of file
@@ -0,0 +1,14 @@
+package vault;
+
+/**
+ * FileFormat enum.
+ * The on-disk formats a vault can be saved in. TEXT is the line-oriented 
+ * format that can be read and edited by hand, BINARY is the compact format 
+ * written by BinaryVaultFile. Vaults detect the format when they open a 
+ * file, so either can be read regardless of which one is selected.
+ *
+ * @author Qiyuan
+ */
+public enum FileFormat {
+	TEXT, BINARY
+}
@@ -0,0 +1,426 @@
+package vault;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+import javafx.collections.ObservableListBase;
+import model.Task;
+
+/**
+ * HistoryList class.
+ * An ObservableList that keeps its tasks in the order they are added, and
+ * may hold the same task more than once, for HistoryVault. The tasks are
+ * kept in slots that are only ever appended to: a removed task leaves an
+ * empty slot behind instead of shifting the tasks after it, and a Fenwick
+ * tree counting the filled slots turns positions into slots and back in
+ * O(log n) time. The slots are compacted once most of them are empty.
+ *
+ * The tasks are also kept in a stack per name, most recently added on
+ * top, so that the last task with a name is found in O(1) time. The list
+ * listens to the name property of each task it holds, so that a renamed
+ * task moves to the stack of its new name.
+ *
+ * @author Qiyuan
+ */
+class HistoryList extends ObservableListBase<Task> {
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private Entry[] slots;
+	// Fenwick tree over the slots, 1-based, counting the filled ones
+	private int[] tree;
+	private int slotCount;
+	private int size;
+	// Entries of each name, ordered by slot with the last at the top
+	private final Map<String, List<Entry>> stacks;
+	// Entries of each task, for when its name changes
+	private final Map<Task, List<Entry>> entries;
+	// Task owning each listened name property
+	private final Map<ObservableValue<String>, Task> owners;
+	private final ChangeListener<String> nameListener;
+
+	/**
+	 * A task in a slot.
+	 */
+	private static class Entry {
+		private final Task task;
+		private int slot;
+
+		private Entry(Task task, int slot) {
+			this.task = task;
+			this.slot = slot;
+		}
+	}
+
+	/**
+	 * Constructs an empty HistoryList object.
+	 */
+	HistoryList() {
+		slots = new Entry[INITIAL_CAPACITY];
+		tree = new int[INITIAL_CAPACITY + 1];
+		stacks = new HashMap<String, List<Entry>>();
+		entries = new IdentityHashMap<Task, List<Entry>>();
+		owners = new IdentityHashMap<ObservableValue<String>, Task>();
+		nameListener = (property, oldName, newName) ->
+				rename(owners.get(property), oldName, newName);
+	}
+
+	@Override
+	public Task get(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("index " + index);
+		}
+		return slots[findSlot(index + 1)].task;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Appends the task to the list.
+	 *
+	 * @param task    the Task object.
+	 * @return        true.
+	 */
+	@Override
+	public boolean add(Task task) {
+		append(task);
+		beginChange();
+		nextAdd(size - 1, size);
+		endChange();
+		return true;
+	}
+
+	/**
+	 * Appends the tasks to the list in order as one change.
+	 *
+	 * @param tasks    the Task objects.
+	 * @return         true if any task was appended.
+	 */
+	@Override
+	public boolean addAll(Collection<? extends Task> tasks) {
+		if (tasks.isEmpty()) {
+			return false;
+		}
+		int from = size;
+		for (Task task : tasks) {
+			append(task);
+		}
+		beginChange();
+		nextAdd(from, size);
+		endChange();
+		return true;
+	}
+
+	@Override
+	public Task remove(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("index " + index);
+		}
+		Entry entry = slots[findSlot(index + 1)];
+		takeFromStack(entry, entry.task.getTaskName());
+		release(entry);
+		return entry.task;
+	}
+
+	@Override
+	public void clear() {
+		if (size == 0) {
+			return;
+		}
+		List<Task> removed = new ArrayList<Task>(this);
+		for (Task task : entries.keySet()) {
+			task.taskNameProperty().removeListener(nameListener);
+		}
+		slots = new Entry[INITIAL_CAPACITY];
+		tree = new int[INITIAL_CAPACITY + 1];
+		slotCount = 0;
+		size = 0;
+		stacks.clear();
+		entries.clear();
+		owners.clear();
+		modCount++;
+		beginChange();
+		nextRemove(0, removed);
+		endChange();
+	}
+
+	@Override
+	public int indexOf(Object object) {
+		for (int slot = 0, index = 0; slot < slotCount; slot++) {
+			if (slots[slot] == null) {
+				continue;
+			}
+			if (slots[slot].task.equals(object)) {
+				return index;
+			}
+			index++;
+		}
+		return -1;
+	}
+
+	@Override
+	public int lastIndexOf(Object object) {
+		for (int slot = slotCount - 1, index = size - 1; slot >= 0; slot--) {
+			if (slots[slot] == null) {
+				continue;
+			}
+			if (slots[slot].task.equals(object)) {
+				return index;
+			}
+			index--;
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the tasks in order, walking the slots once instead of looking
+	 * up each position.
+	 *
+	 * @return    an array of the tasks.
+	 */
+	@Override
+	public Object[] toArray() {
+		Object[] tasks = new Object[size];
+		for (int slot = 0, index = 0; slot < slotCount; slot++) {
+			if (slots[slot] != null) {
+				tasks[index++] = slots[slot].task;
+			}
+		}
+		return tasks;
+	}
+
+	@Override
+	public Task set(int index, Task task) {
+		throw new UnsupportedOperationException("list is only appended to");
+	}
+
+	@Override
+	public void add(int index, Task task) {
+		throw new UnsupportedOperationException("list is only appended to");
+	}
+
+	/**
+	 * Returns the position of the last task with the given name.
+	 *
+	 * @param taskName    name of the task.
+	 * @return            its position, or -1 if no task has that name.
+	 */
+	int lastIndexOfName(String taskName) {
+		List<Entry> stack = stacks.get(taskName);
+		if (stack == null) {
+			return -1;
+		}
+		return countFilled(stack.get(stack.size() - 1).slot) - 1;
+	}
+
+	/**
+	 * Removes the last task with the given name and returns it.
+	 *
+	 * @param taskName    name of the task.
+	 * @return            the task, or null if no task has that name.
+	 */
+	Task pop(String taskName) {
+		List<Entry> stack = stacks.get(taskName);
+		if (stack == null) {
+			return null;
+		}
+		Entry entry = stack.remove(stack.size() - 1);
+		if (stack.isEmpty()) {
+			stacks.remove(taskName);
+		}
+		release(entry);
+		return entry.task;
+	}
+
+	/**
+	 * Returns the last task in the list.
+	 *
+	 * @return    the task, or null if the list is empty.
+	 */
+	Task peek() {
+		return size == 0 ? null : slots[slotCount - 1].task;
+	}
+
+	/**
+	 * Puts the task in a new slot after the others.
+	 */
+	private void append(Task task) {
+		if (slotCount == slots.length) {
+			grow();
+		}
+		Entry entry = new Entry(task, slotCount++);
+		slots[entry.slot] = entry;
+		addFilled(entry.slot, 1);
+		size++;
+		modCount++;
+		List<Entry> stack = stacks.get(task.getTaskName());
+		if (stack == null) {
+			stack = new ArrayList<Entry>(1);
+			stacks.put(task.getTaskName(), stack);
+		}
+		stack.add(entry);
+		List<Entry> taskEntries = entries.get(task);
+		if (taskEntries == null) {
+			taskEntries = new ArrayList<Entry>(1);
+			entries.put(task, taskEntries);
+			owners.put(task.taskNameProperty(), task);
+			task.taskNameProperty().addListener(nameListener);
+		}
+		taskEntries.add(entry);
+	}
+
+	/**
+	 * Empties the slot of an entry already taken from its stack and
+	 * reports the removal.
+	 */
+	private void release(Entry entry) {
+		int index = countFilled(entry.slot) - 1;
+		slots[entry.slot] = null;
+		addFilled(entry.slot, -1);
+		size--;
+		modCount++;
+		List<Entry> taskEntries = entries.get(entry.task);
+		taskEntries.remove(entry);
+		if (taskEntries.isEmpty()) {
+			entries.remove(entry.task);
+			owners.remove(entry.task.taskNameProperty());
+			entry.task.taskNameProperty().removeListener(nameListener);
+		}
+		// Empty slots at the end are reused rather than compacted
+		while (slotCount > 0 && slots[slotCount - 1] == null) {
+			slotCount--;
+		}
+		if (slotCount > INITIAL_CAPACITY && size < slotCount / 2) {
+			compact();
+		}
+		beginChange();
+		nextRemove(index, entry.task);
+		endChange();
+	}
+
+	/**
+	 * Moves the entries of the task from the stack of oldName to that of
+	 * newName, keeping the stack ordered by slot.
+	 */
+	private void rename(Task task, String oldName, String newName) {
+		List<Entry> taskEntries = entries.get(task);
+		if (taskEntries == null) {
+			return;
+		}
+		for (Entry entry : taskEntries) {
+			takeFromStack(entry, oldName);
+			List<Entry> stack = stacks.get(newName);
+			if (stack == null) {
+				stack = new ArrayList<Entry>(1);
+				stacks.put(newName, stack);
+			}
+			int at = stack.size();
+			while (at > 0 && stack.get(at - 1).slot > entry.slot) {
+				at--;
+			}
+			stack.add(at, entry);
+		}
+	}
+
+	private void takeFromStack(Entry entry, String taskName) {
+		List<Entry> stack = stacks.get(taskName);
+		if (stack == null) {
+			return;
+		}
+		for (int i = stack.size() - 1; i >= 0; i--) {
+			if (stack.get(i) == entry) {
+				stack.remove(i);
+				break;
+			}
+		}
+		if (stack.isEmpty()) {
+			stacks.remove(taskName);
+		}
+	}
+
+	/**
+	 * Doubles the number of slots.
+	 */
+	private void grow() {
+		Entry[] grown = new Entry[slots.length * 2];
+		System.arraycopy(slots, 0, grown, 0, slotCount);
+		slots = grown;
+		rebuildTree();
+	}
+
+	/**
+	 * Moves the tasks to the first slots, keeping their order.
+	 */
+	private void compact() {
+		int filled = 0;
+		for (int slot = 0; slot < slotCount; slot++) {
+			if (slots[slot] != null) {
+				slots[filled] = slots[slot];
+				slots[filled].slot = filled;
+				filled++;
+			}
+		}
+		for (int slot = filled; slot < slotCount; slot++) {
+			slots[slot] = null;
+		}
+		slotCount = filled;
+		rebuildTree();
+	}
+
+	/**
+	 * Rebuilds the Fenwick tree from the slots in O(n) time.
+	 */
+	private void rebuildTree() {
+		tree = new int[slots.length + 1];
+		for (int i = 1; i <= slots.length; i++) {
+			if (slots[i - 1] != null) {
+				tree[i]++;
+			}
+			int parent = i + (i & -i);
+			if (parent <= slots.length) {
+				tree[parent] += tree[i];
+			}
+		}
+	}
+
+	private void addFilled(int slot, int delta) {
+		for (int i = slot + 1; i < tree.length; i += i & -i) {
+			tree[i] += delta;
+		}
+	}
+
+	/**
+	 * Returns the number of filled slots up to and including slot.
+	 */
+	private int countFilled(int slot) {
+		int count = 0;
+		for (int i = slot + 1; i > 0; i -= i & -i) {
+			count += tree[i];
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the slot holding the count-th task, counting from 1.
+	 */
+	private int findSlot(int count) {
+		int position = 0;
+		for (int step = Integer.highestOneBit(tree.length - 1); step > 0;
+				step >>= 1) {
+			if (position + step < tree.length && tree[position + step] < count) {
+				position += step;
+				count -= tree[position];
+			}
+		}
+		return position;
+	}
+}
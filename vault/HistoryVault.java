@@ -5,17 +5,22 @@ package vault;
 import java.io.IOException;
 import java.nio.file.Paths;
 
-import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
 import model.Task;
 import model.IdGenerator;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 
 /**
  * HistoryVault class.
  * The list within HistoryVault will be unsorted and treated 
  * to be Stack-like with a Last-In-First Out priority. It will also 
- * allow duplicates within it.
+ * allow duplicates within it. The tasks are kept in a HistoryList, which 
+ * finds the last task with a name without walking the list and removes 
+ * tasks without shifting the ones after them.
  *
  * @author Qiyuan
  */
@@ -38,10 +43,21 @@ public class HistoryVault extends Vault {
 			openFile(filePath);
 		}
 		else {
-			list = FXCollections.observableArrayList();
+			list = newList();
 		}
 	}
 
+	/**
+	 * This method overrides the same method inherited from Vault.
+	 * Creates an empty list that keeps tasks in the order they are 
+	 * inserted.
+	 * 
+	 * @return    the empty list.
+	 */
+	protected ObservableList<Task> newList() {
+		return new HistoryList();
+	}
+
 	/**
 	 * This method overrides the same method inherited from Vault.
 	 * Inserts the specified Task object into the list and return true 
@@ -61,6 +77,24 @@ public class HistoryVault extends Vault {
 		return list.add(newTask);
 	}
 	
+	/**
+	 * This method overrides the same method inherited from Vault.
+	 * Inserts the specified Task objects into the list in order WITHOUT 
+	 * sorting. Tasks that are null or have a null taskName are skipped.
+	 * 
+	 * @param newTasks    the Task objects.
+	 * @return            true if any task was inserted.
+	 */
+	public boolean storeAll(Collection<Task> newTasks) {
+		List<Task> toStore = new ArrayList<Task>(newTasks.size());
+		for (Task newTask : newTasks) {
+			if (newTask != null && newTask.getTaskName() != null) {
+				toStore.add(newTask);
+			}
+		}
+		return list.addAll(toStore);
+	}
+	
 	/**
 	 * Removes the last found occurrence of the specified task and 
 	 * return it.
@@ -69,11 +103,42 @@ public class HistoryVault extends Vault {
 	 * @return            the task if it is successful else null.
 	 */
 	public Task pop(String taskName) {
-		int index = backSearchIndex(taskName);
-		if (index == INVALID) {
+		if (taskName == null) {
 			return null;
 		}
-		return list.remove(index); 
+		ensureLoaded();
+		return getHistoryList().pop(taskName);
+	}
+	
+	/**
+	 * Returns the last task without removing it.
+	 * 
+	 * @return    the last task, or null if there is none.
+	 */
+	public Task peek() {
+		ensureLoaded();
+		return getHistoryList().peek();
+	}
+	
+	/**
+	 * This method overrides the same method inherited from Vault.
+	 * Finds the last task with the given name from the stack of tasks 
+	 * with that name instead of walking the list from the back.
+	 * 
+	 * @param taskName    name of the task.
+	 * @return            index of the Task object if found else INVALID.
+	 */
+	protected int backSearchIndex(String taskName) {
+		if (taskName == null) {
+			return INVALID;
+		}
+		ensureLoaded();
+		int index = getHistoryList().lastIndexOfName(taskName);
+		return index < 0 ? INVALID : index;
+	}
+	
+	private HistoryList getHistoryList() {
+		return (HistoryList) list;
 	}
 	
 	/**
@@ -101,7 +166,7 @@ public class HistoryVault extends Vault {
 	 * cleared in completedTaskVault or trashVault.
 	 */
 	public void flush() {
-		 IdGenerator idGenerator = new IdGenerator();
+		 IdGenerator idGenerator = IdGenerator.getInstance();
 		 Iterator<Task> iterator = list.iterator();
 		 while (iterator.hasNext()) {
 			 Task task = iterator.next();
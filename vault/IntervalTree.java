@@ -0,0 +1,218 @@
+package vault;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import javafx.collections.ObservableList;
+import model.Task;
+
+/**
+ * IntervalTree class.
+ * Indexes the events of an ObservableList, the tasks with a start and an
+ * end, by the period between them so that the events overlapping a period
+ * are found in O(log n + k) time. The periods are kept as seconds since the
+ * epoch in a treap ordered by start, in which each node also holds the
+ * latest end in its subtree, so that subtrees ending before the period are
+ * skipped. Nodes break ties of start by the order they were inserted in,
+ * so a task is found again for removal by its own node rather than by its
+ * period, which may have changed since it was indexed.
+ *
+ * @author Qiyuan
+ */
+class IntervalTree extends ListIndex {
+
+	private static final long SECONDS_PER_DAY = 86400;
+	private static final Random random = new Random();
+
+	private final Map<Task, Node> nodes;
+	private Node root;
+	private long insertCount;
+
+	/**
+	 * A node of the treap.
+	 */
+	private static class Node {
+		private final Task task;
+		private final long start;
+		private final long end;
+		private final long sequence;
+		private final int priority;
+		private long maxEnd;
+		private Node left;
+		private Node right;
+
+		private Node(Task task, long start, long end, long sequence) {
+			this.task = task;
+			this.start = start;
+			this.end = end;
+			this.sequence = sequence;
+			priority = random.nextInt();
+			maxEnd = end;
+		}
+	}
+
+	/**
+	 * Constructs an IntervalTree object over the events in list and keeps
+	 * it up to date as the list changes.
+	 *
+	 * @param list    the list to index.
+	 */
+	IntervalTree(ObservableList<Task> list) {
+		super(list);
+		nodes = new IdentityHashMap<Task, Node>();
+		indexList();
+	}
+
+	@Override
+	void clear() {
+		nodes.clear();
+		root = null;
+	}
+
+	/**
+	 * Adds to overlaps, in order of start, the events whose period shares
+	 * time with the period from start to end, or is exactly that period,
+	 * and stops once limit events have been found.
+	 *
+	 * @param start       start of the period in epoch seconds.
+	 * @param end         end of the period in epoch seconds.
+	 * @param overlaps    the list to add the events to.
+	 * @param limit       the most events to find.
+	 */
+	void findOverlaps(long start, long end, List<Task> overlaps, int limit) {
+		findOverlaps(root, start, end, overlaps, limit);
+	}
+
+	/**
+	 * Returns the instant as seconds since the epoch, without creating a
+	 * LocalDateTime.
+	 *
+	 * @param date    the date.
+	 * @param time    the time of day.
+	 * @return        the seconds since the epoch.
+	 */
+	static long toEpochSecond(LocalDate date, LocalTime time) {
+		return date.toEpochDay() * SECONDS_PER_DAY + time.toSecondOfDay();
+	}
+
+	private static void findOverlaps(Node node, long start, long end,
+			                         List<Task> overlaps, int limit) {
+		if (node == null || node.maxEnd < start || overlaps.size() >= limit) {
+			return;
+		}
+		findOverlaps(node.left, start, end, overlaps, limit);
+		if (node.start > end || overlaps.size() >= limit) {
+			return;
+		}
+		if ((node.start < end && start < node.end)
+				|| (node.start == start && node.end == end)) {
+			overlaps.add(node.task);
+		}
+		findOverlaps(node.right, start, end, overlaps, limit);
+	}
+
+	@Override
+	void add(Task task) {
+		if (nodes.containsKey(task) || task.getStartDate() == null
+				|| task.getStartTime() == null || task.getEndDate() == null
+				|| task.getEndTime() == null) {
+			return;
+		}
+		Node node = new Node(task,
+				             toEpochSecond(task.getStartDate(), task.getStartTime()),
+				             toEpochSecond(task.getEndDate(), task.getEndTime()),
+				             insertCount++);
+		nodes.put(task, node);
+		Node[] parts = split(root, node);
+		root = merge(merge(parts[0], node), parts[1]);
+	}
+
+	@Override
+	void remove(Task task) {
+		Node node = nodes.remove(task);
+		if (node == null) {
+			return;
+		}
+		root = delete(root, node);
+	}
+
+	/**
+	 * Splits the tree into the nodes ordered before key and the rest.
+	 */
+	private static Node[] split(Node node, Node key) {
+		if (node == null) {
+			return new Node[] { null, null };
+		}
+		if (isBefore(node, key)) {
+			Node[] parts = split(node.right, key);
+			node.right = parts[0];
+			update(node);
+			parts[0] = node;
+			return parts;
+		}
+		Node[] parts = split(node.left, key);
+		node.left = parts[1];
+		update(node);
+		parts[1] = node;
+		return parts;
+	}
+
+	/**
+	 * Joins two trees, all of whose nodes in first come before second.
+	 */
+	private static Node merge(Node first, Node second) {
+		if (first == null) {
+			return second;
+		}
+		if (second == null) {
+			return first;
+		}
+		if (first.priority > second.priority) {
+			first.right = merge(first.right, second);
+			update(first);
+			return first;
+		}
+		second.left = merge(first, second.left);
+		update(second);
+		return second;
+	}
+
+	private static Node delete(Node node, Node key) {
+		if (node == null) {
+			return null;
+		}
+		if (node == key) {
+			return merge(node.left, node.right);
+		}
+		if (isBefore(key, node)) {
+			node.left = delete(node.left, key);
+		}
+		else {
+			node.right = delete(node.right, key);
+		}
+		update(node);
+		return node;
+	}
+
+	private static boolean isBefore(Node node, Node key) {
+		if (node.start != key.start) {
+			return node.start < key.start;
+		}
+		return node.sequence < key.sequence;
+	}
+
+	private static void update(Node node) {
+		long maxEnd = node.end;
+		if (node.left != null && node.left.maxEnd > maxEnd) {
+			maxEnd = node.left.maxEnd;
+		}
+		if (node.right != null && node.right.maxEnd > maxEnd) {
+			maxEnd = node.right.maxEnd;
+		}
+		node.maxEnd = maxEnd;
+	}
+}
@@ -0,0 +1,203 @@
+package vault;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * KeyMatcher class.
+ * Finds the longest of a set of keys, such as task names or ids, contained
+ * in a text with one pass over the text whatever the number of keys. The
+ * keys are held in an Aho-Corasick automaton: a trie of the keys in which
+ * each node also links to the node of its longest proper suffix in the trie
+ * and to the nearest such suffix that is a whole key. Keys are added and
+ * removed in the trie as they come and go, counting how many times each is
+ * held. A change to the keys does not relink the trie: it moves the matcher
+ * to a new version, and the links of a node are worked out again from those
+ * of its parent only when a match reaches the node after that, so a lookup
+ * following a change costs the nodes it reaches rather than the whole trie.
+ *
+ * @author Qiyuan
+ */
+class KeyMatcher {
+
+	private final Node root;
+	// Bumped whenever the keys change, making every link out of date
+	private long version;
+	// Number of fail links worked out so far, for the tests
+	private long linkCount;
+
+	/**
+	 * A node of the trie, standing for the characters leading to it.
+	 */
+	private static class Node {
+		private final Node parent;
+		private final char last;
+		private final int depth;
+		private final Map<Character, Node> next;
+		// Number of times the characters leading here were added as a key
+		private int count;
+		// Node of the longest proper suffix in the trie
+		private Node fail;
+		// Node of the longest proper suffix that is a key
+		private Node output;
+		// Versions of the matcher the fail and output links were set for
+		private long failVersion = -1;
+		private long outputVersion = -1;
+
+		private Node(Node parent, char last) {
+			this.parent = parent;
+			this.last = last;
+			depth = parent == null ? 0 : parent.depth + 1;
+			next = new HashMap<Character, Node>(2);
+		}
+	}
+
+	/**
+	 * Constructs an empty KeyMatcher object.
+	 */
+	KeyMatcher() {
+		root = new Node(null, '\0');
+	}
+
+	/**
+	 * Adds the key once more. Null and empty keys are ignored.
+	 *
+	 * @param key    the key to add.
+	 */
+	void add(String key) {
+		if (key == null || key.isEmpty()) {
+			return;
+		}
+		Node node = root;
+		for (int i = 0; i < key.length(); i++) {
+			Node child = node.next.get(key.charAt(i));
+			if (child == null) {
+				child = new Node(node, key.charAt(i));
+				node.next.put(key.charAt(i), child);
+			}
+			node = child;
+		}
+		node.count++;
+		version++;
+	}
+
+	/**
+	 * Removes the key once, dropping the nodes no other key needs once it
+	 * is no longer held.
+	 *
+	 * @param key    the key to remove.
+	 */
+	void remove(String key) {
+		if (key == null || key.isEmpty()) {
+			return;
+		}
+		Node node = root;
+		for (int i = 0; i < key.length() && node != null; i++) {
+			node = node.next.get(key.charAt(i));
+		}
+		if (node == null || node.count == 0) {
+			return;
+		}
+		node.count--;
+		while (node != root && node.count == 0 && node.next.isEmpty()) {
+			node.parent.next.remove(node.last);
+			node = node.parent;
+		}
+		version++;
+	}
+
+	/**
+	 * Removes all the keys.
+	 */
+	void clear() {
+		root.next.clear();
+		version++;
+	}
+
+	/**
+	 * Returns the distinct keys of the greatest length contained in the
+	 * text, in the order they end in it.
+	 *
+	 * @param text    the text to look in.
+	 * @return        the longest keys found, or an empty list if none is.
+	 */
+	List<String> findLongest(String text) {
+		List<String> longest = new ArrayList<String>(1);
+		int length = 0;
+		Node node = root;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			while (node != root && !node.next.containsKey(c)) {
+				node = fail(node);
+			}
+			Node child = node.next.get(c);
+			node = child == null ? root : child;
+			Node match = node.count > 0 ? node : output(node);
+			if (match == null || match.depth < length) {
+				continue;
+			}
+			String key = text.substring(i + 1 - match.depth, i + 1);
+			if (match.depth > length) {
+				length = match.depth;
+				longest.clear();
+			}
+			if (!longest.contains(key)) {
+				longest.add(key);
+			}
+		}
+		return longest;
+	}
+
+	/**
+	 * Returns the node of the longest proper suffix of node in the trie,
+	 * working it out from the link of the parent if the keys have changed
+	 * since it was last set.
+	 */
+	private Node fail(Node node) {
+		if (node.failVersion == version) {
+			return node.fail;
+		}
+		Node fail = root;
+		if (node.depth > 1) {
+			fail = fail(node.parent);
+			while (fail != root && !fail.next.containsKey(node.last)) {
+				fail = fail(fail);
+			}
+			Node suffix = fail.next.get(node.last);
+			fail = suffix == null ? root : suffix;
+		}
+		node.fail = fail;
+		node.failVersion = version;
+		linkCount++;
+		return fail;
+	}
+
+	/**
+	 * Returns the number of times a fail link has been worked out, which
+	 * grows with the nodes lookups reach rather than with the trie.
+	 *
+	 * @return    the number of links set.
+	 */
+	long getLinkCount() {
+		return linkCount;
+	}
+
+	/**
+	 * Returns the node of the longest proper suffix of node that is a key,
+	 * or null if there is none, working it out again in the same way.
+	 */
+	private Node output(Node node) {
+		if (node == root) {
+			return null;
+		}
+		if (node.outputVersion == version) {
+			return node.output;
+		}
+		Node fail = fail(node);
+		node.output = fail.count > 0 ? fail : output(fail);
+		node.outputVersion = version;
+		return node.output;
+	}
+}
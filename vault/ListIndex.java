@@ -0,0 +1,102 @@
+package vault;
+
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import model.Task;
+
+/**
+ * ListIndex class.
+ * The base of the indexes a vault keeps over its ObservableList. It
+ * listens to the list and hands each task added or removed to add and
+ * remove, however the change is made, so an index only keeps its own
+ * structure. A list may hold the same task more than once, and a task is
+ * handed over once for each time it is added or removed. Vaults replace
+ * their list on load, so a vault checks isIndexing before each use and
+ * detaches an index over a list it no longer holds.
+ *
+ * @author Qiyuan
+ */
+abstract class ListIndex {
+
+	private final ObservableList<Task> list;
+	private final ListChangeListener<Task> listListener;
+
+	/**
+	 * Constructs a ListIndex object over list. Subclasses call
+	 * indexList once their own fields are set.
+	 *
+	 * @param list    the list to index.
+	 */
+	ListIndex(ObservableList<Task> list) {
+		this.list = list;
+		listListener = change -> {
+			while (change.next()) {
+				if (change.wasPermutated() || change.wasUpdated()) {
+					continue;
+				}
+				for (Task task : change.getRemoved()) {
+					remove(task);
+				}
+				for (Task task : change.getAddedSubList()) {
+					add(task);
+				}
+			}
+		};
+	}
+
+	/**
+	 * Adds the tasks already in the list and starts listening to it.
+	 */
+	final void indexList() {
+		for (Task task : list) {
+			add(task);
+		}
+		list.addListener(listListener);
+	}
+
+	/**
+	 * Returns true if this index is over the given list.
+	 *
+	 * @param list    the list to check.
+	 * @return        true if list is the indexed list.
+	 */
+	final boolean isIndexing(ObservableList<Task> list) {
+		return this.list == list;
+	}
+
+	/**
+	 * Stops listening to the list and empties the index.
+	 */
+	final void detach() {
+		list.removeListener(listListener);
+		clear();
+	}
+
+	/**
+	 * Returns the indexed list.
+	 *
+	 * @return    the list.
+	 */
+	final ObservableList<Task> getList() {
+		return list;
+	}
+
+	/**
+	 * Indexes a task added to the list.
+	 *
+	 * @param task    the Task object.
+	 */
+	abstract void add(Task task);
+
+	/**
+	 * Unindexes a task removed from the list.
+	 *
+	 * @param task    the Task object.
+	 */
+	abstract void remove(Task task);
+
+	/**
+	 * Empties the index and stops listening to the indexed tasks.
+	 */
+	abstract void clear();
+}
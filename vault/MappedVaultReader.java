@@ -0,0 +1,233 @@
+package vault;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.MonthDay;
+import java.util.ArrayList;
+import java.util.List;
+
+import model.RecurringTask;
+import model.Task;
+
+/**
+ * MappedVaultReader class.
+ * Reads a vault file in the binary format written by BinaryVaultFile. Large
+ * files are mapped into memory with FileChannel.map and parsed in place, so
+ * opening them costs no read copies. Small files are read into the heap
+ * instead, since mapping them costs more than it saves. A record that does
+ * not decode into a valid task is reported as corrupt.
+ *
+ * @author Qiyuan
+ */
+class MappedVaultReader {
+
+	private static final long MAP_THRESHOLD = 1024 * 1024;
+	private static final int MINUTES_PER_HOUR = 60;
+
+	private final ByteBuffer buffer;
+	private final int taskCount;
+	private long sequence;
+	private int tasksRead;
+	private byte[] stringBytes;
+
+	/**
+	 * Constructs a MappedVaultReader object over the file at filePath and
+	 * checks its header.
+	 *
+	 * @param filePath        the path to the file.
+	 * @throws IOException    if the file cannot be read or is not valid.
+	 */
+	MappedVaultReader(Path filePath) throws IOException {
+		try (FileChannel channel = FileChannel.open(filePath,
+				                       StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException("vault file too large: " + filePath);
+			}
+			if (size >= MAP_THRESHOLD) {
+				buffer = channel.map(MapMode.READ_ONLY, 0, size);
+			}
+			else {
+				buffer = ByteBuffer.allocate((int) size);
+				while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+				}
+				buffer.flip();
+			}
+		}
+		stringBytes = new byte[64];
+		try {
+			taskCount = readHeader();
+		} catch (BufferUnderflowException error) {
+			throw new IOException("truncated vault file: " + filePath);
+		}
+	}
+
+	/**
+	 * Reads all the remaining tasks in the file.
+	 *
+	 * @return                the tasks in file order.
+	 * @throws IOException    if a record is not valid.
+	 */
+	List<Task> readAll() throws IOException {
+		List<Task> tasks = new ArrayList<Task>(taskCount - tasksRead);
+		while (hasNext()) {
+			tasks.add(next());
+		}
+		return tasks;
+	}
+
+	/**
+	 * Returns the number of the last journal segment folded into the file.
+	 *
+	 * @return    the segment sequence from the header.
+	 */
+	long getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * Returns true if there are records left to read.
+	 *
+	 * @return    true if there is a next record.
+	 */
+	boolean hasNext() {
+		return tasksRead < taskCount;
+	}
+
+	/**
+	 * Decodes the next record into a task.
+	 *
+	 * @return                the next task.
+	 * @throws IOException    if the record is not valid.
+	 */
+	Task next() throws IOException {
+		int end = recordEnd();
+		Task task;
+		try {
+			task = readTask();
+		} catch (BufferUnderflowException | IllegalArgumentException
+				 | DateTimeException error) {
+			throw new IOException("corrupt vault record " + tasksRead);
+		}
+		buffer.position(end);
+		tasksRead++;
+		return task;
+	}
+
+	/**
+	 * Reads and checks the header and returns the number of tasks, which
+	 * must fit in the rest of the file.
+	 */
+	private int readHeader() throws IOException {
+		if (buffer.remaining() < BinaryVaultFile.HEADER_LENGTH
+				|| buffer.getInt() != BinaryVaultFile.MAGIC) {
+			throw new IOException("not a binary vault file");
+		}
+		short version = buffer.getShort();
+		if (version != BinaryVaultFile.VERSION
+				&& version != BinaryVaultFile.VERSION_1) {
+			throw new IOException("unsupported vault file version " + version);
+		}
+		int count = buffer.getInt();
+		if (version != BinaryVaultFile.VERSION_1) {
+			sequence = buffer.getLong();
+		}
+		// Every record takes at least its length prefix
+		if (count < 0 || count > buffer.remaining() / Integer.BYTES) {
+			throw new IOException("corrupt vault task count " + count);
+		}
+		return count;
+	}
+
+	/**
+	 * Reads the length prefix of the next record and returns the position
+	 * just past the record.
+	 */
+	private int recordEnd() throws IOException {
+		if (buffer.remaining() < Integer.BYTES) {
+			throw new IOException("truncated vault file");
+		}
+		int length = buffer.getInt();
+		if (length < 0 || length > buffer.remaining()) {
+			throw new IOException("corrupt vault record " + tasksRead);
+		}
+		return buffer.position() + length;
+	}
+
+	private Task readTask() {
+		int flags = buffer.get() & 0xFF;
+		Task task = new Task(readString(), null, null, null, null, null);
+		if ((flags & BinaryVaultFile.HAS_COMMENT) != 0) {
+			task.setComment(readString());
+		}
+		if ((flags & BinaryVaultFile.HAS_START_DATE) != 0) {
+			task.setStartDate(LocalDate.ofEpochDay(buffer.getInt()));
+		}
+		if ((flags & BinaryVaultFile.HAS_START_TIME) != 0) {
+			task.setStartTime(toLocalTime(buffer.getShort()));
+		}
+		if ((flags & BinaryVaultFile.HAS_END_DATE) != 0) {
+			task.setEndDate(LocalDate.ofEpochDay(buffer.getInt()));
+		}
+		if ((flags & BinaryVaultFile.HAS_END_TIME) != 0) {
+			task.setEndTime(toLocalTime(buffer.getShort()));
+		}
+		String id = null;
+		if ((flags & BinaryVaultFile.HAS_ID) != 0) {
+			id = readString();
+		}
+		if ((flags & BinaryVaultFile.IS_RECURRING) != 0) {
+			task = readRecurrence(task);
+		}
+		task.setId(id);
+		return task;
+	}
+
+	private Task readRecurrence(Task task) {
+		int recurrence = buffer.getInt();
+		switch (buffer.get() & 0xFF) {
+		case BinaryVaultFile.WEEKLY:
+			DayOfWeek dayOfWeek = DayOfWeek.of(buffer.get() & 0xFF);
+			return new RecurringTask(task, recurrence, dayOfWeek);
+		case BinaryVaultFile.MONTHLY:
+			int dayOfMonth = buffer.get() & 0xFF;
+			return new RecurringTask(task, recurrence, dayOfMonth);
+		case BinaryVaultFile.YEARLY:
+			int month = buffer.get() & 0xFF;
+			MonthDay monthDay = MonthDay.of(month, buffer.get() & 0xFF);
+			return new RecurringTask(task, recurrence, monthDay);
+		default:
+			return new RecurringTask(task, recurrence);
+		}
+	}
+
+	/**
+	 * Decodes a string straight from the buffer, reusing one scratch array
+	 * for the bytes of every string.
+	 */
+	private String readString() {
+		int length = buffer.getInt();
+		if (length < 0 || length > buffer.remaining()) {
+			throw new IllegalArgumentException("bad string length " + length);
+		}
+		if (length > stringBytes.length) {
+			stringBytes = new byte[Math.max(length, stringBytes.length * 2)];
+		}
+		buffer.get(stringBytes, 0, length);
+		return new String(stringBytes, 0, length, BinaryVaultFile.CHAR_SET);
+	}
+
+	private static LocalTime toLocalTime(int minuteOfDay) {
+		return LocalTime.of(minuteOfDay / MINUTES_PER_HOUR,
+				            minuteOfDay % MINUTES_PER_HOUR);
+	}
+}
@@ -0,0 +1,327 @@
+package vault;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import javafx.collections.ObservableListBase;
+import model.Task;
+
+/**
+ * SortedTaskList class.
+ * An ObservableList that keeps its tasks in Task.compareTo order, with ties
+ * kept in insertion order as a stable sort would. The tasks are held in an
+ * order-statistic treap, a randomly balanced binary tree in which each node
+ * knows the size of its subtree, so insertion, removal and access by
+ * position all take O(log n) time and no insertion re-sorts the list.
+ *
+ * Tasks are placed by their own order and not by the position passed in,
+ * so add(int, Task) and set(int, Task) are not supported.
+ *
+ * @author Qiyuan
+ */
+class SortedTaskList extends ObservableListBase<Task> {
+
+	private static final Random random = new Random();
+
+	private Node root;
+	private long insertCount;
+	// Insertion number of each task, to find it in the tree again
+	private final Map<Task, Long> sequences;
+
+	/**
+	 * A node of the treap.
+	 */
+	private static class Node {
+		private final Task task;
+		private final long sequence;
+		private final int priority;
+		private int size;
+		private Node left;
+		private Node right;
+
+		private Node(Task task, long sequence) {
+			this.task = task;
+			this.sequence = sequence;
+			priority = random.nextInt();
+			size = 1;
+		}
+	}
+
+	/**
+	 * Constructs an empty SortedTaskList object.
+	 */
+	SortedTaskList() {
+		sequences = new IdentityHashMap<Task, Long>();
+	}
+
+	@Override
+	public Task get(int index) {
+		if (index < 0 || index >= size()) {
+			throw new IndexOutOfBoundsException("index " + index);
+		}
+		Node node = root;
+		while (true) {
+			int leftSize = size(node.left);
+			if (index < leftSize) {
+				node = node.left;
+			}
+			else if (index == leftSize) {
+				return node.task;
+			}
+			else {
+				index -= leftSize + 1;
+				node = node.right;
+			}
+		}
+	}
+
+	@Override
+	public int size() {
+		return size(root);
+	}
+
+	/**
+	 * Inserts the task at its place in the order.
+	 *
+	 * @param task    the Task object.
+	 * @return        true.
+	 */
+	@Override
+	public boolean add(Task task) {
+		int index = insert(task);
+		beginChange();
+		nextAdd(index, index + 1);
+		endChange();
+		return true;
+	}
+
+	/**
+	 * Inserts the tasks at their places in the order as one change.
+	 *
+	 * @param tasks    the Task objects.
+	 * @return         true if any task was inserted.
+	 */
+	@Override
+	public boolean addAll(Collection<? extends Task> tasks) {
+		if (tasks.isEmpty()) {
+			return false;
+		}
+		beginChange();
+		for (Task task : tasks) {
+			int index = insert(task);
+			nextAdd(index, index + 1);
+		}
+		endChange();
+		return true;
+	}
+
+	@Override
+	public Task remove(int index) {
+		Task task = get(index);
+		Node[] parts = split(root, index);
+		Node[] rest = split(parts[1], 1);
+		root = merge(parts[0], rest[1]);
+		sequences.remove(task);
+		modCount++;
+		beginChange();
+		nextRemove(index, task);
+		endChange();
+		return task;
+	}
+
+	@Override
+	public boolean remove(Object object) {
+		int index = indexOf(object);
+		if (index < 0) {
+			return false;
+		}
+		remove(index);
+		return true;
+	}
+
+	@Override
+	public void clear() {
+		if (root == null) {
+			return;
+		}
+		List<Task> removed = new ArrayList<Task>(this);
+		root = null;
+		sequences.clear();
+		modCount++;
+		beginChange();
+		nextRemove(0, removed);
+		endChange();
+	}
+
+	/**
+	 * Returns the position of the task, found through the tree by its order
+	 * and insertion number. A task whose order has changed since it was
+	 * inserted is found by walking the list instead.
+	 *
+	 * @param object    the task to look for.
+	 * @return          its position, or -1 if it is not in the list.
+	 */
+	@Override
+	public int indexOf(Object object) {
+		Long sequence = sequences.get(object);
+		if (sequence == null) {
+			return -1;
+		}
+		Task task = (Task) object;
+		Node node = root;
+		int index = 0;
+		while (node != null) {
+			int order = compare(task, sequence, node);
+			if (order < 0) {
+				node = node.left;
+			}
+			else if (order > 0) {
+				index += size(node.left) + 1;
+				node = node.right;
+			}
+			else if (node.task == task) {
+				return index + size(node.left);
+			}
+			else {
+				break;
+			}
+		}
+		return super.indexOf(object);
+	}
+
+	@Override
+	public boolean contains(Object object) {
+		return sequences.containsKey(object);
+	}
+
+	/**
+	 * Returns the tasks in order, walking the tree once instead of looking
+	 * up each position, so that copying the list takes O(n) time.
+	 *
+	 * @return    an array of the tasks.
+	 */
+	@Override
+	public Object[] toArray() {
+		Object[] tasks = new Object[size()];
+		fill(root, tasks, 0);
+		return tasks;
+	}
+
+	@Override
+	public Task set(int index, Task task) {
+		throw new UnsupportedOperationException("list is kept sorted");
+	}
+
+	@Override
+	public void add(int index, Task task) {
+		throw new UnsupportedOperationException("list is kept sorted");
+	}
+
+	/**
+	 * Inserts the task into the tree and returns its position.
+	 */
+	private int insert(Task task) {
+		long sequence = insertCount++;
+		Node node = new Node(task, sequence);
+		int index = countBefore(task, sequence);
+		Node[] parts = split(root, index);
+		root = merge(merge(parts[0], node), parts[1]);
+		sequences.put(task, sequence);
+		modCount++;
+		return index;
+	}
+
+	/**
+	 * Returns the number of tasks that come before the task with the given
+	 * insertion number.
+	 */
+	private int countBefore(Task task, long sequence) {
+		Node node = root;
+		int count = 0;
+		while (node != null) {
+			if (compare(task, sequence, node) < 0) {
+				node = node.left;
+			}
+			else {
+				count += size(node.left) + 1;
+				node = node.right;
+			}
+		}
+		return count;
+	}
+
+	private static int compare(Task task, long sequence, Node node) {
+		int order = task.compareTo(node.task);
+		if (order != 0) {
+			return order;
+		}
+		return Long.compare(sequence, node.sequence);
+	}
+
+	/**
+	 * Splits the tree into its first count tasks and the rest.
+	 */
+	private static Node[] split(Node node, int count) {
+		if (node == null) {
+			return new Node[] { null, null };
+		}
+		int leftSize = size(node.left);
+		if (count <= leftSize) {
+			Node[] parts = split(node.left, count);
+			node.left = parts[1];
+			update(node);
+			parts[1] = node;
+			return parts;
+		}
+		Node[] parts = split(node.right, count - leftSize - 1);
+		node.right = parts[0];
+		update(node);
+		parts[0] = node;
+		return parts;
+	}
+
+	/**
+	 * Joins two trees, all of whose tasks in first come before second.
+	 */
+	private static Node merge(Node first, Node second) {
+		if (first == null) {
+			return second;
+		}
+		if (second == null) {
+			return first;
+		}
+		if (first.priority > second.priority) {
+			first.right = merge(first.right, second);
+			update(first);
+			return first;
+		}
+		second.left = merge(first, second.left);
+		update(second);
+		return second;
+	}
+
+	/**
+	 * Copies the tasks of the subtree into the array in order from index 
+	 * and returns the index after the last one.
+	 */
+	private static int fill(Node node, Object[] tasks, int index) {
+		if (node == null) {
+			return index;
+		}
+		index = fill(node.left, tasks, index);
+		tasks[index] = node.task;
+		return fill(node.right, tasks, index + 1);
+	}
+
+	private static void update(Node node) {
+		node.size = size(node.left) + size(node.right) + 1;
+	}
+
+	private static int size(Node node) {
+		return node == null ? 0 : node.size;
+	}
+}
@@ -0,0 +1,362 @@
+package vault;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+import javafx.collections.ObservableList;
+import model.Task;
+
+/**
+ * TaskIndex class.
+ * Indexes the tasks of an ObservableList by name and by id so that a vault
+ * can find them without walking the list. The words of each name, split
+ * on whitespace as search words are, are indexed too, and each distinct
+ * word is itself indexed under every piece of up to GRAM_LENGTH characters
+ * it holds, so that the words containing a search word are found from the
+ * words sharing its rarest piece instead of from every word. The names
+ * and ids are also kept in KeyMatchers, so that the longest of them
+ * contained in a text is found in one pass over the text. The index
+ * listens to the name and id properties of each indexed task, so that
+ * setTaskName and setId move the task to its new key.
+ *
+ * @author Qiyuan
+ */
+class TaskIndex extends ListIndex {
+
+	private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+	private static final int GRAM_LENGTH = 3;
+
+	private final Map<String, List<Task>> byName;
+	private final Map<String, List<Task>> byId;
+	private final Map<String, List<Task>> byToken;
+	// Distinct words of the names holding each piece of a word
+	private final Map<String, Set<String>> byGram;
+	private final KeyMatcher nameMatcher;
+	private final KeyMatcher idMatcher;
+	// Number of times each task is in the list, which may hold duplicates
+	private final Map<Task, Integer> counts;
+	// Task owning each listened name and id property
+	private final Map<ObservableValue<String>, Task> owners;
+	private final ChangeListener<String> nameListener;
+	private final ChangeListener<String> idListener;
+
+	/**
+	 * Constructs a TaskIndex object over the tasks in list and keeps it up
+	 * to date as the list changes.
+	 *
+	 * @param list    the list to index.
+	 */
+	TaskIndex(ObservableList<Task> list) {
+		super(list);
+		byName = new HashMap<String, List<Task>>();
+		byId = new HashMap<String, List<Task>>();
+		byToken = new HashMap<String, List<Task>>();
+		byGram = new HashMap<String, Set<String>>();
+		nameMatcher = new KeyMatcher();
+		idMatcher = new KeyMatcher();
+		counts = new IdentityHashMap<Task, Integer>();
+		owners = new IdentityHashMap<ObservableValue<String>, Task>();
+		nameListener = (property, oldName, newName) -> {
+			rekey(byName, nameMatcher, property, oldName, newName);
+			retoken(property, oldName, newName);
+		};
+		idListener = (property, oldId, newId) ->
+				rekey(byId, idMatcher, property, oldId, newId);
+		indexList();
+	}
+
+	@Override
+	void clear() {
+		for (Task task : counts.keySet()) {
+			task.taskNameProperty().removeListener(nameListener);
+			task.idProperty().removeListener(idListener);
+		}
+		counts.clear();
+		owners.clear();
+		byName.clear();
+		byId.clear();
+		byToken.clear();
+		byGram.clear();
+		nameMatcher.clear();
+		idMatcher.clear();
+	}
+
+	/**
+	 * Returns true if the task itself is in the list.
+	 *
+	 * @param task    the Task object.
+	 * @return        true if the list holds the task.
+	 */
+	boolean contains(Task task) {
+		return counts.containsKey(task);
+	}
+
+	/**
+	 * Returns the tasks in the list with the given name.
+	 *
+	 * @param taskName    name of the task.
+	 * @return            the tasks with that name, in no particular order.
+	 */
+	List<Task> getByName(String taskName) {
+		return get(byName, taskName);
+	}
+
+	/**
+	 * Returns the tasks in the list with the given id.
+	 *
+	 * @param id    id of the task.
+	 * @return      the tasks with that id, in no particular order.
+	 */
+	List<Task> getById(String id) {
+		return get(byId, id);
+	}
+
+	/**
+	 * Adds to found the tasks in the list whose name contains the word, 
+	 * which must not be empty or contain whitespace. A word of up to 
+	 * GRAM_LENGTH characters is itself a piece, so the words holding it 
+	 * are exactly the words containing it. A longer word is looked for 
+	 * only among the words holding its rarest piece.
+	 *
+	 * @param word     the word to look for.
+	 * @param found    the set to add the tasks to.
+	 */
+	void findContaining(String word, Set<Task> found) {
+		Set<String> candidates = null;
+		for (String gram : toGrams(word, Math.min(word.length(), 
+				                                  GRAM_LENGTH))) {
+			Set<String> tokens = byGram.get(gram);
+			if (tokens == null) {
+				return;
+			}
+			if (candidates == null || tokens.size() < candidates.size()) {
+				candidates = tokens;
+			}
+		}
+		for (String token : candidates) {
+			if (token.contains(word)) {
+				found.addAll(byToken.get(token));
+			}
+		}
+	}
+
+	/**
+	 * Returns the distinct task names of the greatest length contained in 
+	 * the text.
+	 * 
+	 * @param text    the text to look in.
+	 * @return        the longest names found, in the order they end in it.
+	 */
+	List<String> findLongestNames(String text) {
+		return nameMatcher.findLongest(text);
+	}
+
+	/**
+	 * Returns the distinct ids of the greatest length contained in the text.
+	 * 
+	 * @param text    the text to look in.
+	 * @return        the longest ids found, in the order they end in it.
+	 */
+	List<String> findLongestIds(String text) {
+		return idMatcher.findLongest(text);
+	}
+
+	private static List<Task> get(Map<String, List<Task>> map, String key) {
+		List<Task> tasks = map.get(key);
+		if (tasks == null) {
+			return Collections.emptyList();
+		}
+		return tasks;
+	}
+
+	@Override
+	void add(Task task) {
+		Integer count = counts.get(task);
+		if (count == null) {
+			counts.put(task, 1);
+			put(byName, task.getTaskName(), task);
+			put(byId, task.getId(), task);
+			nameMatcher.add(task.getTaskName());
+			idMatcher.add(task.getId());
+			for (String token : tokenize(task.getTaskName())) {
+				putToken(token, task);
+			}
+			owners.put(task.taskNameProperty(), task);
+			owners.put(task.idProperty(), task);
+			task.taskNameProperty().addListener(nameListener);
+			task.idProperty().addListener(idListener);
+		}
+		else {
+			counts.put(task, count + 1);
+		}
+	}
+
+	@Override
+	void remove(Task task) {
+		Integer count = counts.get(task);
+		if (count == null) {
+			return;
+		}
+		if (count > 1) {
+			counts.put(task, count - 1);
+			return;
+		}
+		counts.remove(task);
+		take(byName, task.getTaskName(), task);
+		take(byId, task.getId(), task);
+		nameMatcher.remove(task.getTaskName());
+		idMatcher.remove(task.getId());
+		for (String token : tokenize(task.getTaskName())) {
+			takeToken(token, task);
+		}
+		owners.remove(task.taskNameProperty());
+		owners.remove(task.idProperty());
+		task.taskNameProperty().removeListener(nameListener);
+		task.idProperty().removeListener(idListener);
+	}
+
+	/**
+	 * Moves the task owning property from oldKey to newKey after its name or
+	 * id has been set.
+	 */
+	private void rekey(Map<String, List<Task>> map, KeyMatcher matcher,
+			           ObservableValue<? extends String> property,
+			           String oldKey, String newKey) {
+		Task task = owners.get(property);
+		if (task == null) {
+			return;
+		}
+		take(map, oldKey, task);
+		put(map, newKey, task);
+		matcher.remove(oldKey);
+		matcher.add(newKey);
+	}
+
+	/**
+	 * Moves the task owning property from the words of oldName to those of 
+	 * newName.
+	 */
+	private void retoken(ObservableValue<? extends String> property,
+			             String oldName, String newName) {
+		Task task = owners.get(property);
+		if (task == null) {
+			return;
+		}
+		for (String token : tokenize(oldName)) {
+			takeToken(token, task);
+		}
+		for (String token : tokenize(newName)) {
+			putToken(token, task);
+		}
+	}
+
+	/**
+	 * Adds the task under a word of its name, indexing the word under its 
+	 * pieces the first time a name holds it.
+	 */
+	private void putToken(String token, Task task) {
+		if (!byToken.containsKey(token)) {
+			for (int length = 1; length <= GRAM_LENGTH; length++) {
+				for (String gram : toGrams(token, length)) {
+					Set<String> tokens = byGram.get(gram);
+					if (tokens == null) {
+						tokens = new HashSet<String>(2);
+						byGram.put(gram, tokens);
+					}
+					tokens.add(token);
+				}
+			}
+		}
+		put(byToken, token, task);
+	}
+
+	/**
+	 * Removes the task from a word of its name, dropping the word from its 
+	 * pieces once no name holds it.
+	 */
+	private void takeToken(String token, Task task) {
+		take(byToken, token, task);
+		if (byToken.containsKey(token)) {
+			return;
+		}
+		for (int length = 1; length <= GRAM_LENGTH; length++) {
+			for (String gram : toGrams(token, length)) {
+				Set<String> tokens = byGram.get(gram);
+				if (tokens != null && tokens.remove(token) 
+						&& tokens.isEmpty()) {
+					byGram.remove(gram);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the distinct pieces of the given length in the word.
+	 */
+	private static Set<String> toGrams(String word, int length) {
+		Set<String> grams = new HashSet<String>();
+		for (int i = 0; i + length <= word.length(); i++) {
+			grams.add(word.substring(i, i + length));
+		}
+		return grams;
+	}
+
+	/**
+	 * Returns the distinct words of the name.
+	 */
+	private static Collection<String> tokenize(String taskName) {
+		if (taskName == null) {
+			return Collections.emptySet();
+		}
+		Set<String> tokens = new HashSet<String>();
+		for (String token : WHITESPACE.split(taskName)) {
+			if (!token.isEmpty()) {
+				tokens.add(token);
+			}
+		}
+		return tokens;
+	}
+
+	private static void put(Map<String, List<Task>> map, String key,
+			                Task task) {
+		if (key == null) {
+			return;
+		}
+		List<Task> tasks = map.get(key);
+		if (tasks == null) {
+			tasks = new ArrayList<Task>(1);
+			map.put(key, tasks);
+		}
+		tasks.add(task);
+	}
+
+	private static void take(Map<String, List<Task>> map, String key,
+			                 Task task) {
+		if (key == null) {
+			return;
+		}
+		List<Task> tasks = map.get(key);
+		if (tasks == null) {
+			return;
+		}
+		for (int i = 0; i < tasks.size(); i++) {
+			if (tasks.get(i) == task) {
+				tasks.remove(i);
+				break;
+			}
+		}
+		if (tasks.isEmpty()) {
+			map.remove(key);
+		}
+	}
+}
@@ -1,13 +1,17 @@
 package vault;
 
-import javafx.collections.FXCollections;
 //import javafx.collections.ObservableList;
 
 
 import java.io.IOException;
 import java.nio.file.Paths;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 
 import model.IdGenerator;
 import model.Task;
@@ -19,6 +23,9 @@ import model.Task;
  */
 public class TaskVault extends Vault {
 	
+	private IntervalTree intervals;
+	private CalendarIndex calendar;
+	
 	/**
 	 * Constructs a TaskVault object and use the dirPath to open an existing 
 	 * file in the specified directory if possible. If the file does not exist, 
@@ -36,7 +43,7 @@ public class TaskVault extends Vault {
 			openFile(filePath);
 		}
 		else {
-			list = FXCollections.observableArrayList();
+			list = newList();
 		}
 	}
 	
@@ -58,7 +65,7 @@ public class TaskVault extends Vault {
 			                  LocalDate endDate, LocalTime endTime) {
 		Task task = new Task(taskName, taskDescription, startDate, startTime,
 				             endDate, endTime);
-		IdGenerator idGenerator = new IdGenerator();
+		IdGenerator idGenerator = IdGenerator.getInstance();
 		String idString = idGenerator.generateId(taskName);
 		task.setId(idString);
 		return storeTask(task);
@@ -84,6 +91,94 @@ public class TaskVault extends Vault {
 		if (list.remove(task) == false) {
 			return false;
 		}
+		recordRemove(taskName);
 		return completedTasks.storeTask(task);
 	}
+	
+	/**
+	 * Returns the events, in list order, whose period shares time with the 
+	 * period from start to end, or is exactly that period. Periods that 
+	 * only touch at their ends do not overlap.
+	 * 
+	 * @param start    start of the period.
+	 * @param end      end of the period.
+	 * @return         the overlapping tasks.
+	 */
+	public List<Task> getOverlappingTasks(LocalDateTime start, 
+			                              LocalDateTime end) {
+		List<Task> overlaps = new ArrayList<Task>();
+		findOverlaps(start, end, overlaps, Integer.MAX_VALUE);
+		return overlaps;
+	}
+	
+	/**
+	 * Returns true if any event overlaps the period from start to end, as 
+	 * in getOverlappingTasks.
+	 * 
+	 * @param start    start of the period.
+	 * @param end      end of the period.
+	 * @return         true if there is an overlapping task.
+	 */
+	public boolean hasOverlap(LocalDateTime start, LocalDateTime end) {
+		List<Task> overlaps = new ArrayList<Task>(1);
+		findOverlaps(start, end, overlaps, 1);
+		return !overlaps.isEmpty();
+	}
+	
+	/**
+	 * Returns the dated tasks, in list order, on any day from one date to 
+	 * another, both included, which may be given in either order. A task 
+	 * is on a day if the day is between its start and end dates, or is its 
+	 * start date if it has no end. Only the tasks in the range are visited.
+	 * 
+	 * @param from    the first date.
+	 * @param to      the last date.
+	 * @return        the tasks in the range.
+	 */
+	public List<Task> getTasksBetween(LocalDate from, LocalDate to) {
+		if (to.isBefore(from)) {
+			return getTasksBetween(to, from);
+		}
+		List<Task> found = new ArrayList<Task>();
+		updateIndexes();
+		calendar.findTasks(from.toEpochDay(), to.toEpochDay(), found);
+		// Events that end on or after the first day and start before the 
+		// day after the last
+		intervals.findOverlaps(
+				IntervalTree.toEpochSecond(from, LocalTime.MIDNIGHT) - 1,
+				IntervalTree.toEpochSecond(to.plusDays(1), LocalTime.MIDNIGHT),
+				found, Integer.MAX_VALUE);
+		Map<Task, Integer> positions = new IdentityHashMap<Task, Integer>();
+		for (Task task : found) {
+			positions.put(task, list.indexOf(task));
+		}
+		found.sort((first, second) -> Integer.compare(positions.get(first), 
+				                                      positions.get(second)));
+		return found;
+	}
+	
+	private void findOverlaps(LocalDateTime start, LocalDateTime end, 
+			                  List<Task> overlaps, int limit) {
+		updateIndexes();
+		intervals.findOverlaps(
+				IntervalTree.toEpochSecond(start.toLocalDate(), start.toLocalTime()),
+				IntervalTree.toEpochSecond(end.toLocalDate(), end.toLocalTime()),
+				overlaps, limit);
+	}
+	
+	/**
+	 * Builds the date indexes over the list, or rebuilds them if the list 
+	 * has been replaced since they were built.
+	 */
+	private void updateIndexes() {
+		ensureLoaded();
+		if (intervals == null || !intervals.isIndexing(list)) {
+			if (intervals != null) {
+				intervals.detach();
+				calendar.detach();
+			}
+			intervals = new IntervalTree(list);
+			calendar = new CalendarIndex(list);
+		}
+	}
 }
\ No newline at end of file
@@ -0,0 +1,265 @@
+package vault;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+import javafx.collections.ObservableList;
+import model.Task;
+
+/**
+ * TextIndex class.
+ * Indexes the words of the names and comments of the tasks of an
+ * ObservableList for full-text search. Words are split on anything that is
+ * not a letter or a digit and compared ignoring case. Each word maps to the
+ * tasks holding it with how often they do, a word in the name counting
+ * NAME_WEIGHT times, so that a query is scored TF-IDF style from the tasks
+ * holding its words alone, and only the best few are kept in a bounded
+ * heap. The words of a task are indexed again whenever its name or comment
+ * is set, by listening to those properties of each indexed task.
+ *
+ * @author Qiyuan
+ */
+class TextIndex extends ListIndex {
+
+	private static final Pattern NON_WORD =
+			Pattern.compile("[^\\p{L}\\p{N}]+");
+	private static final int NAME_WEIGHT = 2;
+
+	// Tasks holding each word, with the weighted number of times they do
+	private final Map<String, Map<Task, Integer>> postings;
+	// Weighted words of each task, to remove it by
+	private final Map<Task, Map<String, Integer>> terms;
+	// Number of times each task is in the list, which may hold duplicates
+	private final Map<Task, Integer> counts;
+	// Task owning each listened name and comment property
+	private final Map<ObservableValue<String>, Task> owners;
+	private final ChangeListener<String> textListener;
+
+	/**
+	 * A task with its score for a query.
+	 */
+	private static class Hit {
+		private final Task task;
+		private final double score;
+		private int position = -1;
+
+		private Hit(Task task, double score) {
+			this.task = task;
+			this.score = score;
+		}
+	}
+
+	/**
+	 * Constructs a TextIndex object over the tasks in list and keeps it up
+	 * to date as the list changes.
+	 *
+	 * @param list    the list to index.
+	 */
+	TextIndex(ObservableList<Task> list) {
+		super(list);
+		postings = new HashMap<String, Map<Task, Integer>>();
+		terms = new IdentityHashMap<Task, Map<String, Integer>>();
+		counts = new IdentityHashMap<Task, Integer>();
+		owners = new IdentityHashMap<ObservableValue<String>, Task>();
+		textListener = (property, oldText, newText) -> {
+			Task task = owners.get(property);
+			if (task != null) {
+				unindex(task);
+				index(task);
+			}
+		};
+		indexList();
+	}
+
+	@Override
+	void clear() {
+		for (Task task : counts.keySet()) {
+			task.taskNameProperty().removeListener(textListener);
+			task.commentProperty().removeListener(textListener);
+		}
+		counts.clear();
+		owners.clear();
+		terms.clear();
+		postings.clear();
+	}
+
+	/**
+	 * Returns at most limit tasks holding any word of the query in their
+	 * name or comment, best scored first. A task scores, for each distinct
+	 * word of the query, the log-scaled number of times it holds the word
+	 * times the log of how rare the word is among the tasks. Tasks scoring
+	 * the same are kept in list order.
+	 *
+	 * @param query    the words to look for.
+	 * @param limit    the most tasks to return.
+	 * @return         the best scored tasks.
+	 */
+	List<Task> search(String query, int limit) {
+		if (limit <= 0 || counts.isEmpty()) {
+			return new ArrayList<Task>();
+		}
+		Map<Task, double[]> scores = new IdentityHashMap<Task, double[]>();
+		for (String word : tokenize(query)) {
+			Map<Task, Integer> tasks = postings.get(word);
+			if (tasks == null) {
+				continue;
+			}
+			double idf = Math.log(1.0 + (double) counts.size() / tasks.size());
+			for (Map.Entry<Task, Integer> entry : tasks.entrySet()) {
+				double[] score = scores.get(entry.getKey());
+				if (score == null) {
+					score = new double[1];
+					scores.put(entry.getKey(), score);
+				}
+				score[0] += (1.0 + Math.log(entry.getValue())) * idf;
+			}
+		}
+		// Worst hit at the head, so it is the one dropped when the heap is full
+		Comparator<Hit> worstFirst = (first, second) -> {
+			if (first.score != second.score) {
+				return Double.compare(first.score, second.score);
+			}
+			return Integer.compare(position(second), position(first));
+		};
+		PriorityQueue<Hit> best = new PriorityQueue<Hit>(
+				Math.min(limit, Math.max(scores.size(), 1)), worstFirst);
+		for (Map.Entry<Task, double[]> entry : scores.entrySet()) {
+			Hit hit = new Hit(entry.getKey(), entry.getValue()[0]);
+			if (best.size() < limit) {
+				best.add(hit);
+			}
+			else if (worstFirst.compare(hit, best.peek()) > 0) {
+				best.poll();
+				best.add(hit);
+			}
+		}
+		List<Task> ranked = new ArrayList<Task>(best.size());
+		while (!best.isEmpty()) {
+			ranked.add(best.poll().task);
+		}
+		Collections.reverse(ranked);
+		return ranked;
+	}
+
+	/**
+	 * Returns the position of the hit's task in the list, looking it up
+	 * only once.
+	 */
+	private int position(Hit hit) {
+		if (hit.position < 0) {
+			hit.position = getList().indexOf(hit.task);
+		}
+		return hit.position;
+	}
+
+	/**
+	 * Returns the distinct words of the text in lower case.
+	 */
+	private static Set<String> tokenize(String text) {
+		Set<String> words = new LinkedHashSet<String>();
+		if (text == null) {
+			return words;
+		}
+		for (String word : NON_WORD.split(text)) {
+			if (!word.isEmpty()) {
+				words.add(word.toLowerCase(Locale.ROOT));
+			}
+		}
+		return words;
+	}
+
+	@Override
+	void add(Task task) {
+		Integer count = counts.get(task);
+		if (count != null) {
+			counts.put(task, count + 1);
+			return;
+		}
+		counts.put(task, 1);
+		index(task);
+		owners.put(task.taskNameProperty(), task);
+		owners.put(task.commentProperty(), task);
+		task.taskNameProperty().addListener(textListener);
+		task.commentProperty().addListener(textListener);
+	}
+
+	@Override
+	void remove(Task task) {
+		Integer count = counts.get(task);
+		if (count == null) {
+			return;
+		}
+		if (count > 1) {
+			counts.put(task, count - 1);
+			return;
+		}
+		counts.remove(task);
+		unindex(task);
+		owners.remove(task.taskNameProperty());
+		owners.remove(task.commentProperty());
+		task.taskNameProperty().removeListener(textListener);
+		task.commentProperty().removeListener(textListener);
+	}
+
+	/**
+	 * Adds the task under the words of its current name and comment.
+	 */
+	private void index(Task task) {
+		Map<String, Integer> words = new HashMap<String, Integer>();
+		count(words, task.getTaskName(), NAME_WEIGHT);
+		count(words, task.getComment(), 1);
+		terms.put(task, words);
+		for (Map.Entry<String, Integer> entry : words.entrySet()) {
+			Map<Task, Integer> tasks = postings.get(entry.getKey());
+			if (tasks == null) {
+				tasks = new IdentityHashMap<Task, Integer>(2);
+				postings.put(entry.getKey(), tasks);
+			}
+			tasks.put(task, entry.getValue());
+		}
+	}
+
+	/**
+	 * Removes the task from the words it was last indexed under.
+	 */
+	private void unindex(Task task) {
+		Map<String, Integer> words = terms.remove(task);
+		if (words == null) {
+			return;
+		}
+		for (String word : words.keySet()) {
+			Map<Task, Integer> tasks = postings.get(word);
+			tasks.remove(task);
+			if (tasks.isEmpty()) {
+				postings.remove(word);
+			}
+		}
+	}
+
+	private static void count(Map<String, Integer> words, String text,
+			                  int weight) {
+		if (text == null) {
+			return;
+		}
+		for (String word : NON_WORD.split(text)) {
+			if (word.isEmpty()) {
+				continue;
+			}
+			word = word.toLowerCase(Locale.ROOT);
+			Integer count = words.get(word);
+			words.put(word, count == null ? weight : count + weight);
+		}
+	}
+}
@@ -6,8 +6,6 @@ package vault;
 import java.io.IOException;
 import java.nio.file.Paths;
 
-import javafx.collections.FXCollections;
-
 /**
  * TrashVault class.
  *
@@ -19,7 +17,8 @@ public class TrashVault extends Vault {
 	 * Constructs a TrashVault object and use the dirPath to open an existing 
 	 * file in the specified directory if possible. If the file does not exist, 
 	 * it creates an empty list. The path to the directory must be valid and the 
-	 * directory must exist. Otherwise it will throw an IOException.
+	 * directory must exist. Otherwise it will throw an IOException. The 
+	 * file is only read on first access, see openFileLazily.
 	 * 
 	 * @param dirPath         path to the directory for file access.
 	 * @throws IOException    if path is invalid or directory does not exist.
@@ -29,10 +28,10 @@ public class TrashVault extends Vault {
 		fileName = "/trash.txt";
 		// setFilePath(filePath);
 		if (canFindFile(filePath)) {
-			openFile(filePath);
+			openFileLazily(filePath);
 		}
 		else {
-			list = FXCollections.observableArrayList();
+			list = newList();
 		}
 	}
 }
\ No newline at end of file
@@ -3,23 +3,39 @@ package vault;
 import model.IdGenerator;
 import model.Task;
 import model.RecurringTask;
+import storage.AtomicFile;
+import storage.Journal;
 import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.Files;
-import java.nio.file.StandardOpenOption;
 import java.nio.charset.Charset;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.time.DayOfWeek;
 import java.time.MonthDay;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
 
 /**
  * Vault class.
@@ -50,6 +66,15 @@ public class Vault {
 	protected static final String START_TIME_DOUBLE_SPACE = "starttime  ";
 	protected static final String START_DATE_DOUBLE_SPACE = "startdate  ";
 	protected static final String END_OF_TASK = "end of task";
+	protected static final String JOURNAL_SUFFIX = ".log";
+	protected static final String JOURNAL_STORE = "store";
+	protected static final String JOURNAL_REMOVE_SPACE = "remove ";
+	protected static final String SEGMENT_SEPARATOR = ".";
+	// Task names cannot start with "@", so this never reads as a task
+	protected static final String SEQUENCE_SPACE = "@sequence ";
+	protected static final int COMPACT_SEGMENTS = 4;
+	private static final int LIST_ORDER_SCAN_FRACTION = 8;
+	private static final Pattern WHITESPACE = Pattern.compile("\\s");
 	protected static final Charset CHAR_SET = Charset.forName("US-ASCII");
 	protected static DateTimeFormatter timeFormat = DateTimeFormatter.ISO_LOCAL_TIME;
 	protected static DateTimeFormatter dateFormat = DateTimeFormatter.ISO_LOCAL_DATE;
@@ -57,6 +82,31 @@ public class Vault {
 	protected ObservableList<Task> list;
 	protected Path filePath;
 	protected String fileName;
+	protected boolean isJournaled;
+	protected FileFormat fileFormat = FileFormat.TEXT;
+	private FileFormat diskFormat = FileFormat.TEXT;
+	private Journal journal;
+	private boolean isLoading;
+	private boolean isLoaded = true;
+	private boolean needsCheckpoint;
+	private int modCount;
+	private int savedModCount;
+	private boolean isSegmented;
+	private final Object segmentLock = new Object();
+	private int snapshotGeneration;
+	private TaskIndex index;
+	private TextIndex textIndex;
+	private ObservableList<Task> snapshot;
+	private ObservableList<Task> snapshotSource;
+	private final ListChangeListener<Task> snapshotInvalidator = 
+			change -> snapshot = null;
+	
+	private static final ExecutorService compactor = 
+			Executors.newSingleThreadExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "vault-compactor");
+				thread.setDaemon(true);
+				return thread;
+			});
 
 	/**
 	 * Default constructor.
@@ -82,7 +132,7 @@ public class Vault {
 			openFile(filePath);
 		}
 		else {
-			list = FXCollections.observableArrayList();
+			list = newList();
 		}
 	}
 	
@@ -99,22 +149,61 @@ public class Vault {
 	}
 	
 	/**
-	 * Inserts the specified Task object into the list, sort the list and 
-	 * return true if it is successful. Also, The list must not already 
+	 * Inserts the specified Task object into the list at its sorted place 
+	 * and return true if it is successful. Also, The list must not already 
 	 * contain the object and the task object must not have a null taskName.
 	 * 
 	 * @param newTask    Task object.
 	 * @return           true if this is successful.
 	 */
 	public boolean storeTask(Task newTask) {
-		if (newTask == null || list.contains(newTask)) {
+		if (newTask == null || newTask.getTaskName() == null) {
+			return false;
+		}
+		if (isAppendOnly()) {
+			recordStore(newTask);
+			return true;
+		}
+		ensureLoaded();
+		if (getIndex().contains(newTask)) {
 			return false;
 		}
-		if (newTask.getTaskName() == null) {
+		list.add(newTask);	//kept in Task.compareTo order
+		recordStore(newTask);
+		return true;
+	}
+	
+	/**
+	 * Inserts all the specified Task objects into the list at their sorted 
+	 * places. Tasks that are null, have a null taskName or are already in 
+	 * the list are skipped, as in storeTask.
+	 * 
+	 * @param newTasks    the Task objects.
+	 * @return            true if any task was inserted.
+	 */
+	public boolean storeAll(Collection<Task> newTasks) {
+		boolean isAppendOnly = isAppendOnly();
+		if (!isAppendOnly) {
+			ensureLoaded();
+		}
+		Set<Task> added = new HashSet<Task>();
+		List<Task> toStore = new ArrayList<Task>(newTasks.size());
+		for (Task newTask : newTasks) {
+			if (newTask != null && newTask.getTaskName() != null
+					&& (isAppendOnly || !getIndex().contains(newTask))
+					&& added.add(newTask)) {
+				toStore.add(newTask);
+			}
+		}
+		if (toStore.isEmpty()) {
 			return false;
 		}
-		list.add(newTask);
-		FXCollections.sort(list);	//Task implements comparable
+		if (!isAppendOnly) {
+			list.addAll(toStore);	//kept in Task.compareTo order
+		}
+		for (Task newTask : toStore) {
+			recordStore(newTask);
+		}
 		return true;
 	}
 	
@@ -135,6 +224,7 @@ public class Vault {
 			return false;
 		}
 		trash.storeTask(task);
+		recordRemove(taskName);
 		return list.remove(task);
 	}
 	
@@ -150,103 +240,396 @@ public class Vault {
 		if (task == null) {
 			return false;
 		}
-		IdGenerator idGenerator = new IdGenerator();
+		IdGenerator idGenerator = IdGenerator.getInstance();
 		idGenerator.removeId(task.getId());
+		recordRemove(taskName);
 		return list.remove(task);
 	}
 	
 	/**
-	 * Returns a copy of the list.
+	 * Returns a read-only snapshot of the list. The snapshot is copied on 
+	 * the first call after the list changes and shared by every call until 
+	 * the next change, so reading the list repeatedly costs nothing and a 
+	 * snapshot never changes under its reader.
 	 * 
-	 * @return    the copied list.
+	 * @return    the unmodifiable snapshot.
 	 */
 	public ObservableList<Task> getList() {
-		ObservableList<Task> listCopy = FXCollections.observableArrayList();;
-		for (int i = 0; i < list.size(); i++) {
-			listCopy.add(list.get(i));
+		ensureLoaded();
+		if (snapshotSource != list) {
+			if (snapshotSource != null) {
+				snapshotSource.removeListener(snapshotInvalidator);
+			}
+			list.addListener(snapshotInvalidator);
+			snapshotSource = list;
+			snapshot = null;
 		}
-		return listCopy;
+		if (snapshot == null) {
+			snapshot = FXCollections.unmodifiableObservableList(
+					FXCollections.observableArrayList(list));
+		}
+		return snapshot;
 	}
 	
 	/**
-	 * Saves the list in a special string format into the relevant file.
+	 * Saves the list into the relevant file if it has been modified since 
+	 * the last save. In journaled mode only the mutations since the last 
+	 * save are appended to the journal, and the full list is written out 
+	 * once the journal grows past its checkpoint size. In segmented mode 
+	 * the journal is sealed as a segment instead and the segments are 
+	 * merged into the file in the background.
+	 * 
+	 * Before the full list is written out, the journal is sealed as the 
+	 * next segment, whose number the file records. A crash before the 
+	 * segment is deleted then leaves a segment that opening skips, rather 
+	 * than a journal that would be replayed on top of its own records.
 	 */	
 	public void save() {
-		try (BufferedWriter writer = Files.newBufferedWriter(filePath, 
-				                         CHAR_SET, StandardOpenOption.CREATE, 
-				                         StandardOpenOption.WRITE, 
-				                         StandardOpenOption.SYNC,
-				                         StandardOpenOption.TRUNCATE_EXISTING)) {
-			int i = 0;
-			while (i < list.size()) {
-				Task task = list.get(i);
-				writer.write(task.getTaskName());
-				writer.newLine();
-				if (task.getComment() != null) {
-					writer.write(COMMENT_SPACE + task.getComment());
-					writer.newLine();
-				}
-				else {
-					writer.write(COMMENT_DOUBLE_SPACE);
-					writer.newLine();
-				}
-				if (task.getStartDate() != null) {
-					writer.write(START_DATE_SPACE + task.getStartDate().toString());
-					writer.newLine();
-					writer.write(START_TIME_SPACE + task.getStartTime().toString());
-					writer.newLine();
+		if (!isModified()) {
+			return;
+		}
+		if (isJournaled && !needsCheckpoint && filePath.toFile().exists()
+				&& (isSegmented() || !getJournal().needsCheckpoint())) {
+			getJournal().flush();
+			if (isSegmented() && getJournal().needsCheckpoint()) {
+				sealJournal();
+			}
+		}
+		else if (sealJournalForSnapshot() && writeSnapshot()) {
+			getJournal().delete();
+			needsCheckpoint = false;
+		}
+		else {
+			// Keep the journal and try again on the next save
+			return;
+		}
+		savedModCount = modCount;
+	}
+	
+	/**
+	 * Returns true if the list has changed since it was last saved.
+	 * 
+	 * @return    true if the vault needs saving.
+	 */
+	public boolean isModified() {
+		return modCount != savedModCount || needsCheckpoint;
+	}
+	
+	/**
+	 * Turns journaled persistence on or off. When it is on, storeTask, 
+	 * deleteTask, remove and completeTask append records to a journal 
+	 * beside the vault file instead of rewriting the whole file on save.
+	 * 
+	 * @param isJournaled    true to use journaled persistence.
+	 */
+	public void setJournaled(boolean isJournaled) {
+		this.isJournaled = isJournaled;
+	}
+	
+	/**
+	 * Turns segmented storage on or off. When it is on and the vault is 
+	 * journaled and saved in the BINARY format, a full journal is sealed 
+	 * into an immutable segment beside the vault file, so a save never 
+	 * rewrites the whole file. Sealed segments are merged into the file by 
+	 * a background compactor, which also drops the tasks they removed.
+	 * 
+	 * @param isSegmented    true to use segmented storage.
+	 */
+	public void setSegmented(boolean isSegmented) {
+		this.isSegmented = isSegmented;
+	}
+	
+	/**
+	 * Returns true if full journals are sealed into segments.
+	 */
+	private boolean isSegmented() {
+		return isSegmented && isJournaled && fileFormat == FileFormat.BINARY;
+	}
+	
+	/**
+	 * Selects the format the vault file is saved in. If the existing file 
+	 * is in another format, it is converted on the next save.
+	 * 
+	 * @param fileFormat    TEXT or BINARY.
+	 */
+	public void setFileFormat(FileFormat fileFormat) {
+		assert fileFormat != null;
+		this.fileFormat = fileFormat;
+		if (fileFormat != diskFormat && filePath.toFile().exists()) {
+			needsCheckpoint = true;
+		}
+	}
+
+	/**
+	 * Writes the whole list into the relevant file in the selected format.
+	 * 
+	 * @return    true if the file was written.
+	 */
+	protected boolean writeSnapshot() {
+		ensureLoaded();
+		synchronized (segmentLock) {
+			try {
+				List<Long> segments = listSegments(0);
+				if (fileFormat == FileFormat.BINARY) {
+					// The list includes every segment, so none are replayed
+					BinaryVaultFile.write(filePath, list, lastSequence());
 				}
 				else {
-					writer.write(START_DATE_DOUBLE_SPACE);
-					writer.newLine();
-					writer.write(START_TIME_DOUBLE_SPACE);
-					writer.newLine();
-				}
-				if (task.getEndDate() != null) {
-					writer.write(END_DATE_SPACE + task.getEndDate().toString());
-					writer.newLine();
-					writer.write(END_TIME_SPACE + task.getEndTime().toString());
-					writer.newLine();
+					long sequence = lastSequence();
+					AtomicFile.write(filePath, CHAR_SET, writer -> {
+						if (sequence > 0) {
+							writer.write(SEQUENCE_SPACE + sequence);
+							writer.newLine();
+						}
+						for (int i = 0; i < list.size(); i++) {
+							writeTask(writer, list.get(i));
+						}
+					});
 				}
-				else {
-					writer.write(END_DATE_DOUBLE_SPACE);
-					writer.newLine();
-					writer.write(END_TIME_DOUBLE_SPACE);
-					writer.newLine();
+				diskFormat = fileFormat;
+				deleteSegments(segments);
+				snapshotGeneration++;
+				return true;
+			} catch (IOException error) {
+				System.err.format("%s%n", error);
+				return false;
+			}
+		}
+	}
+	
+	/**
+	 * Seals the journal file, if there is one, as the next segment so that 
+	 * the snapshot about to be written records that it holds the journal's 
+	 * records. Records not yet flushed stay pending. 
+	 * 
+	 * @return    true if there is no journal file left to replay.
+	 */
+	protected boolean sealJournalForSnapshot() {
+		synchronized (segmentLock) {
+			return getJournal().sealForSnapshot(getSegmentPath(lastSequence() 
+					                                           + 1));
+		}
+	}
+	
+	/**
+	 * Seals the journal file as the next segment and starts the compactor 
+	 * once enough segments have piled up.
+	 */
+	private void sealJournal() {
+		int segmentCount;
+		synchronized (segmentLock) {
+			if (!getJournal().seal(getSegmentPath(lastSequence() + 1))) {
+				return;
+			}
+			segmentCount = listSegments(readSnapshotSequence()).size();
+		}
+		if (segmentCount >= COMPACT_SEGMENTS) {
+			compactor.execute(() -> compact());
+		}
+	}
+	
+	/**
+	 * Merges the sealed segments into the vault file. The file and the 
+	 * segments are read from disk, so the list does not need to be loaded, 
+	 * and the merged file is written beside the vault file before it 
+	 * replaces it. The merge is discarded if the vault file was rewritten 
+	 * in the meantime. Runs on the compactor thread, but may be called 
+	 * directly to compact on the caller's thread.
+	 */
+	public void compact() {
+		Path snapshotPath;
+		List<Long> segments;
+		int generation;
+		synchronized (segmentLock) {
+			if (fileFormat != FileFormat.BINARY || !filePath.toFile().exists()) {
+				return;
+			}
+			snapshotPath = filePath;
+			segments = listSegments(readSnapshotSequence());
+			generation = snapshotGeneration;
+		}
+		if (segments.isEmpty()) {
+			return;
+		}
+		Path mergedPath = Paths.get(snapshotPath + SEGMENT_SEPARATOR + "compact");
+		try {
+			Vault merged = new Vault();
+			merged.list = merged.newList();
+			merged.isLoading = true;
+			merged.readSnapshot(snapshotPath);
+			for (long segment : segments) {
+				merged.replayLog(getSegmentPath(snapshotPath, segment));
+			}
+			BinaryVaultFile.write(mergedPath, merged.list, 
+					              segments.get(segments.size() - 1));
+			synchronized (segmentLock) {
+				if (generation != snapshotGeneration) {
+					Files.deleteIfExists(mergedPath);
+					return;
 				}
-				if (task.isRecurring()) {
-					RecurringTask recurringTask = (RecurringTask) task;
-					writer.write(RECURRING_SPACE + recurringTask.getRecurrence());
-					writer.newLine();
-					if (recurringTask.isDaily()) {
-						writer.write(DAILY);
-					}
-					else if (recurringTask.getRecurrenceDay() != null) {
-						writer.write(WEEKLY_SPACE + recurringTask.getRecurrenceDay().toString());
-					}
-					else if (recurringTask.getDayOfMonth() > ZERO) {
-						writer.write(MONTHLY_SPACE + recurringTask.getDayOfMonth());
-					}
-					else {
-						writer.write(YEARLY_SPACE + recurringTask.getMonthDay().toString());
+				AtomicFile.move(mergedPath, snapshotPath);
+				deleteSegments(segments);
+				snapshotGeneration++;
+			}
+		} catch (IOException error) {
+			System.err.format("%s%n", error);
+		}
+	}
+	
+	/**
+	 * Returns the number of the last segment, sealed or already merged 
+	 * into the vault file.
+	 */
+	private long lastSequence() {
+		List<Long> segments = listSegments(0);
+		long sequence = readSnapshotSequence();
+		if (!segments.isEmpty()) {
+			sequence = Math.max(sequence, segments.get(segments.size() - 1));
+		}
+		return sequence;
+	}
+	
+	/**
+	 * Returns the number of the last segment merged into the vault file.
+	 */
+	private long readSnapshotSequence() {
+		if (!filePath.toFile().exists()) {
+			return 0;
+		}
+		try {
+			if (BinaryVaultFile.isBinaryFile(filePath)) {
+				return BinaryVaultFile.readSequence(filePath);
+			}
+			try (BufferedReader reader = Files.newBufferedReader(filePath)) {
+				return readTextSequence(reader.readLine());
+			}
+		} catch (IOException error) {
+			System.err.format("%s%n", error);
+			return 0;
+		}
+	}
+	
+	/**
+	 * Returns the numbers of the sealed segments after the given one, in 
+	 * ascending order.
+	 * 
+	 * @param after    the last segment number to leave out.
+	 * @return         the segment numbers.
+	 */
+	private List<Long> listSegments(long after) {
+		List<Long> segments = new ArrayList<Long>();
+		Path dirPath = filePath.getParent();
+		String prefix = getJournalPath().getFileName() + SEGMENT_SEPARATOR;
+		if (dirPath == null) {
+			return segments;
+		}
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(dirPath, 
+				prefix + "*")) {
+			for (Path segmentPath : stream) {
+				String suffix = segmentPath.getFileName().toString()
+						.substring(prefix.length());
+				try {
+					long segment = Long.parseLong(suffix);
+					if (segment > after) {
+						segments.add(segment);
 					}
-					writer.newLine();
+				} catch (NumberFormatException error) {
+					// Not a segment
 				}
-				if (task.getId() != null) {
-					writer.write("ID " + task.getId());
-					writer.newLine();
-				}
-				else {
-					writer.write("ID");
-					writer.newLine();
-				}
-				i++;
-				writer.write(END_OF_TASK);
-				writer.newLine();
 			}
 		} catch (IOException error) {
 			System.err.format("%s%n", error);
 		}
+		Collections.sort(segments);
+		return segments;
+	}
+	
+	private void deleteSegments(List<Long> segments) throws IOException {
+		for (long segment : segments) {
+			Files.deleteIfExists(getSegmentPath(segment));
+		}
+	}
+	
+	private Path getSegmentPath(long segment) {
+		return getSegmentPath(filePath, segment);
+	}
+	
+	private static Path getSegmentPath(Path snapshotPath, long segment) {
+		return Paths.get(snapshotPath + JOURNAL_SUFFIX + SEGMENT_SEPARATOR 
+				         + segment);
+	}
+
+	/**
+	 * Writes a single task in the special string format.
+	 * 
+	 * @param writer          the writer to write to.
+	 * @param task            the Task object.
+	 * @throws IOException    if the write fails.
+	 */
+	protected static void writeTask(BufferedWriter writer, Task task) 
+			throws IOException {
+		writer.write(task.getTaskName());
+		writer.newLine();
+		if (task.getComment() != null) {
+			writer.write(COMMENT_SPACE + task.getComment());
+			writer.newLine();
+		}
+		else {
+			writer.write(COMMENT_DOUBLE_SPACE);
+			writer.newLine();
+		}
+		if (task.getStartDate() != null) {
+			writer.write(START_DATE_SPACE + task.getStartDate().toString());
+			writer.newLine();
+			writer.write(START_TIME_SPACE + task.getStartTime().toString());
+			writer.newLine();
+		}
+		else {
+			writer.write(START_DATE_DOUBLE_SPACE);
+			writer.newLine();
+			writer.write(START_TIME_DOUBLE_SPACE);
+			writer.newLine();
+		}
+		if (task.getEndDate() != null) {
+			writer.write(END_DATE_SPACE + task.getEndDate().toString());
+			writer.newLine();
+			writer.write(END_TIME_SPACE + task.getEndTime().toString());
+			writer.newLine();
+		}
+		else {
+			writer.write(END_DATE_DOUBLE_SPACE);
+			writer.newLine();
+			writer.write(END_TIME_DOUBLE_SPACE);
+			writer.newLine();
+		}
+		if (task.isRecurring()) {
+			RecurringTask recurringTask = (RecurringTask) task;
+			writer.write(RECURRING_SPACE + recurringTask.getRecurrence());
+			writer.newLine();
+			if (recurringTask.isDaily()) {
+				writer.write(DAILY);
+			}
+			else if (recurringTask.getRecurrenceDay() != null) {
+				writer.write(WEEKLY_SPACE + recurringTask.getRecurrenceDay().toString());
+			}
+			else if (recurringTask.getDayOfMonth() > ZERO) {
+				writer.write(MONTHLY_SPACE + recurringTask.getDayOfMonth());
+			}
+			else {
+				writer.write(YEARLY_SPACE + recurringTask.getMonthDay().toString());
+			}
+			writer.newLine();
+		}
+		if (task.getId() != null) {
+			writer.write("ID " + task.getId());
+			writer.newLine();
+		}
+		else {
+			writer.write("ID");
+			writer.newLine();
+		}
+		writer.write(END_OF_TASK);
+		writer.newLine();
 	}
 
 	/**
@@ -265,31 +648,119 @@ public class Vault {
 	 */
 	public void setFilePath(Path dirPath) {
 		assert dirPath != null;
-		this.filePath = Paths.get(dirPath + fileName).toAbsolutePath();
+		ensureLoaded();
+		synchronized (segmentLock) {
+			this.filePath = Paths.get(dirPath + fileName).toAbsolutePath();
+			getJournal().setFilePath(getJournalPath());
+			snapshotGeneration++;
+		}
+		needsCheckpoint = true;
 	}
 	
 	/**
-	 * Deletes the associated file.
+	 * Deletes the associated file, its journal and its segments.
 	 */
 	public void deleteFile(){
-		filePath.toFile().delete();
+		ensureLoaded();
+		synchronized (segmentLock) {
+			filePath.toFile().delete();
+			getJournal().delete();
+			try {
+				deleteSegments(listSegments(0));
+			} catch (IOException error) {
+				System.err.format("%s%n", error);
+			}
+			snapshotGeneration++;
+		}
 	}
 	
 	/**
 	 * Clears the list and the data in the file.
 	 */
 	public boolean clear() {
-		IdGenerator idGenerator = new IdGenerator();
+		ensureLoaded();
+		List<String> ids = new ArrayList<String>(list.size());
 		for (Task task : list) {
-			idGenerator.removeId(task.getId());
+			ids.add(task.getId());
 		}
+		IdGenerator.getInstance().removeIds(ids);
 		list.clear();
+		needsCheckpoint = true;
 		save();
 		return true;
 	}
+	
+	/**
+	 * Records that the task was stored. Marks the vault as modified and, 
+	 * in journaled mode, appends a store record to the journal.
+	 * 
+	 * @param task    the stored Task object.
+	 */
+	protected void recordStore(Task task) {
+		if (isLoading) {
+			return;
+		}
+		modCount++;
+		if (!isJournaled) {
+			return;
+		}
+		StringWriter record = new StringWriter();
+		try (BufferedWriter writer = new BufferedWriter(record)) {
+			writer.write(JOURNAL_STORE);
+			writer.newLine();
+			writeTask(writer, task);
+		} catch (IOException error) {
+			System.err.format("%s%n", error);
+			return;
+		}
+		getJournal().record(record.toString());
+	}
+	
+	/**
+	 * Records that a task was removed. Marks the vault as modified and, in 
+	 * journaled mode, appends a remove record to the journal. The taskName 
+	 * is recorded exactly as it was passed so that replay picks the same 
+	 * task.
+	 * 
+	 * @param taskName    name or id the task was removed by.
+	 */
+	protected void recordRemove(String taskName) {
+		if (isLoading) {
+			return;
+		}
+		modCount++;
+		if (!isJournaled) {
+			return;
+		}
+		getJournal().record(JOURNAL_REMOVE_SPACE + taskName 
+				            + System.lineSeparator());
+	}
+	
+	/**
+	 * Returns the journal of this vault, creating it on first use.
+	 * 
+	 * @return    the Journal object.
+	 */
+	public Journal getJournal() {
+		if (journal == null) {
+			journal = new Journal(getJournalPath());
+		}
+		return journal;
+	}
+	
+	/**
+	 * Returns the path to the journal kept beside the vault file.
+	 * 
+	 * @return    the path to the journal file.
+	 */
+	private Path getJournalPath() {
+		return Paths.get(filePath + JOURNAL_SUFFIX);
+	}
 
 	/**
-	 * Search for the first Task object in the list based on taskName.
+	 * Search for the first Task object in the list based on taskName. Names 
+	 * starting with "@" are looked up as ids. Both are found through the 
+	 * index, and the list is only walked when several tasks share the name.
 	 * 
 	 * @param taskName    name of the task.
 	 * @return            Task object if found else null.
@@ -298,25 +769,192 @@ public class Vault {
 		if (taskName == null) {
 			return null;
 		}
+		ensureLoaded();
+		List<Task> tasks;
 		if (taskName.startsWith("@")) {
-			String idString = taskName;
-			// Search from the front for the task using id
-			for (int i = 0; i < list.size(); i++) {
-				if (list.get(i).getId().equals(idString)) {
-					return list.get(i);
-				}			
-			}		
-			return null;
+			tasks = getIndex().getById(taskName);
 		}
 		else {
-			// Search from the front for the task using taskName
-			for (int i = 0; i < list.size(); i++) {
-				if (list.get(i).getTaskName().equals(taskName)) {
-					return list.get(i);
-				}			
-			}		
+			tasks = getIndex().getByName(taskName);
+		}
+		if (tasks.isEmpty()) {
 			return null;
 		}
+		if (tasks.size() == 1) {
+			return tasks.get(0);
+		}
+		// Search from the front for the first of the matching tasks
+		for (int i = 0; i < list.size(); i++) {
+			for (Task task : tasks) {
+				if (list.get(i) == task) {
+					return task;
+				}
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Returns the longest task name contained in the text, or, if the text 
+	 * starts with "@", the longest id. The names and ids are matched all at 
+	 * once in a single pass over the text. Of several keys of that length, 
+	 * the one of the task first in the list is returned.
+	 * 
+	 * @param text    the text to look in.
+	 * @return        the longest name or id found, or "" if none is.
+	 */
+	public String findLongestKey(String text) {
+		if (text == null) {
+			return "";
+		}
+		ensureLoaded();
+		boolean isId = text.startsWith("@");
+		List<String> keys = isId ? getIndex().findLongestIds(text) 
+				                 : getIndex().findLongestNames(text);
+		if (keys.isEmpty()) {
+			return "";
+		}
+		if (keys.size() == 1) {
+			return keys.get(0);
+		}
+		String found = "";
+		int first = list.size();
+		for (String key : keys) {
+			List<Task> tasks = isId ? getIndex().getById(key) 
+					                : getIndex().getByName(key);
+			for (Task task : tasks) {
+				int position = list.indexOf(task);
+				if (position < first) {
+					first = position;
+					found = key;
+				}
+			}
+		}
+		return found;
+	}
+	
+	/**
+	 * Returns all the tasks named taskName, in list order.
+	 * 
+	 * @param taskName    name of the tasks.
+	 * @return            the tasks with that name.
+	 */
+	public List<Task> getTasksNamed(String taskName) {
+		if (taskName == null) {
+			return new ArrayList<Task>();
+		}
+		ensureLoaded();
+		return inListOrder(new HashSet<Task>(getIndex().getByName(taskName)));
+	}
+	
+	/**
+	 * Returns the tasks whose name contains the word, in list order. The 
+	 * tasks are found through the words of their names, so a word without 
+	 * whitespace never needs the list to be walked.
+	 * 
+	 * @param word    the word to look for.
+	 * @return        the tasks whose name contains it.
+	 */
+	public List<Task> getTasksContaining(String word) {
+		ensureLoaded();
+		Set<Task> found = new HashSet<Task>();
+		if (word.isEmpty() || WHITESPACE.matcher(word).find()) {
+			for (Task task : list) {
+				if (task.getTaskName().contains(word)) {
+					found.add(task);
+				}
+			}
+		}
+		else {
+			getIndex().findContaining(word, found);
+		}
+		return inListOrder(found);
+	}
+	
+	/**
+	 * Returns at most limit tasks whose name or comment holds any word of 
+	 * the query, ignoring case, best match first. Tasks are scored by how 
+	 * often they hold the words and how rare the words are, words in the 
+	 * name counting for more, and only the best limit tasks are kept, so a 
+	 * page of results is found without ordering every match.
+	 * 
+	 * @param query    the words to look for.
+	 * @param limit    the most tasks to return.
+	 * @return         the best matching tasks.
+	 */
+	public List<Task> searchText(String query, int limit) {
+		if (query == null) {
+			return new ArrayList<Task>();
+		}
+		ensureLoaded();
+		return getTextIndex().search(query, limit);
+	}
+	
+	/**
+	 * Returns the tasks of the set in the order they have in the list. A 
+	 * large share of the list is filtered from the list itself, otherwise 
+	 * the tasks are sorted by their positions.
+	 */
+	private List<Task> inListOrder(Set<Task> tasks) {
+		List<Task> ordered = new ArrayList<Task>(tasks.size());
+		if (tasks.size() > list.size() / LIST_ORDER_SCAN_FRACTION) {
+			for (Task task : list) {
+				if (tasks.contains(task)) {
+					ordered.add(task);
+				}
+			}
+			return ordered;
+		}
+		Map<Task, Integer> positions = new IdentityHashMap<Task, Integer>();
+		for (Task task : tasks) {
+			positions.put(task, list.indexOf(task));
+		}
+		ordered.addAll(tasks);
+		ordered.sort((first, second) -> Integer.compare(positions.get(first), 
+				                                        positions.get(second)));
+		return ordered;
+	}
+	
+	/**
+	 * Creates an empty list for the tasks of this vault, which keeps them 
+	 * sorted as they are inserted.
+	 * 
+	 * @return    the empty list.
+	 */
+	protected ObservableList<Task> newList() {
+		return new SortedTaskList();
+	}
+	
+	/**
+	 * Returns the index over the list, rebuilding it if the list has been 
+	 * replaced since it was built.
+	 * 
+	 * @return    the TaskIndex object.
+	 */
+	private TaskIndex getIndex() {
+		if (index == null || !index.isIndexing(list)) {
+			if (index != null) {
+				index.detach();
+			}
+			index = new TaskIndex(list);
+		}
+		return index;
+	}
+	
+	/**
+	 * Returns the full-text index over the list, rebuilding it if the list 
+	 * has been replaced since it was built.
+	 * 
+	 * @return    the TextIndex object.
+	 */
+	private TextIndex getTextIndex() {
+		if (textIndex == null || !textIndex.isIndexing(list)) {
+			if (textIndex != null) {
+				textIndex.detach();
+			}
+			textIndex = new TextIndex(list);
+		}
+		return textIndex;
 	}
 
 	/**
@@ -329,6 +967,7 @@ public class Vault {
 		if (taskName == null) {
 			return INVALID;
 		}
+		ensureLoaded();
 		// Search from the back for the task
 		for (int i = list.size() - 1; i >= 0; i--) {
 			if (list.get(i).getTaskName().equals(taskName)) {
@@ -353,84 +992,269 @@ public class Vault {
 		return true;
 	}
 	
+	/**
+	 * Returns true if the list has been read from the file.
+	 * 
+	 * @return    true if the vault is loaded.
+	 */
+	public boolean isLoaded() {
+		return isLoaded;
+	}
+	
+	/**
+	 * Prepares to open the file, located by filePath, on first access 
+	 * instead of now. Only the header is read, to learn the format of the 
+	 * file. Until the vault is loaded, tasks stored in journaled mode are 
+	 * appended to the journal without reading the file.
+	 * 
+	 * @param filePath    the path to the file.
+	 */
+	protected void openFileLazily(Path filePath) {
+		list = newList();
+		isLoaded = false;
+		try {
+			if (BinaryVaultFile.isBinaryFile(filePath)) {
+				diskFormat = FileFormat.BINARY;
+			}
+		} catch (IOException error) {
+			System.err.format("%s%n", error);
+		}
+	}
+	
+	/**
+	 * Opens the file if it was opened lazily and has not been read yet. 
+	 * Records appended in the meantime that have not been flushed are 
+	 * applied on top, so loading never forces a write in the middle of a 
+	 * command.
+	 */
+	protected void ensureLoaded() {
+		if (isLoaded) {
+			return;
+		}
+		isLoaded = true;
+		openFile(filePath);
+		replayRecords(new BufferedReader(
+				new StringReader(getJournal().getPendingRecords())));
+	}
+	
+	/**
+	 * Returns true if stored tasks can go straight to the journal because 
+	 * the list has not been loaded.
+	 */
+	private boolean isAppendOnly() {
+		return !isLoaded && isJournaled;
+	}
+	
 	/**
 	 * Opens the file, located by filePath, to read it and store the data 
-	 * into list.
+	 * into list. The format of the file is detected from its header. Any 
+	 * sealed segments not yet merged into the file and then the journal 
+	 * left beside the file are replayed on top, once the journal has been 
+	 * recovered from the commit log it has joined, if any.
 	 *  
 	 * @param filePath    the path to the file.
 	 */
 	protected void openFile(Path filePath) {
-		list = FXCollections.observableArrayList();
-		try {
-
-			//BufferedReader reader = new BufferedReader(new FileReader(filePath.toFile()));
-			BufferedReader reader = Files.newBufferedReader(filePath);
-			
+		synchronized (segmentLock) {
+			// A batch that only reached the commit log would be missed
+			getJournal().recover();
+			list = newList();
+			isLoading = true;
+			long sequence = 0;
+			try {
+				sequence = readSnapshot(filePath);
+			} catch (IOException error) {
+				//error.printStackTrace();
+				System.err.format("%s%n", error);
+			}
+			for (long segment : listSegments(sequence)) {
+				replayLog(getSegmentPath(segment));
+			}
+			replayLog(getJournalPath());
+			isLoading = false;
+		}
+	}
+	
+	/**
+	 * Reads the tasks in the file into list, detecting its format from its 
+	 * header, and returns the number of the last segment merged into it.
+	 * 
+	 * @param filePath        the path to the file.
+	 * @return                the segment sequence of the file.
+	 * @throws IOException    if the file cannot be read.
+	 */
+	private long readSnapshot(Path filePath) throws IOException {
+		if (BinaryVaultFile.isBinaryFile(filePath)) {
+			diskFormat = FileFormat.BINARY;
+			MappedVaultReader reader = new MappedVaultReader(filePath);
+			storeAll(reader.readAll());
+			return reader.getSequence();
+		}
+		diskFormat = FileFormat.TEXT;
+		List<Task> tasks = new ArrayList<Task>();
+		long sequence = readTextFile(filePath, tasks);
+		storeAll(tasks);
+		return sequence;
+	}
+	
+	/**
+	 * Reads the tasks in a file in the text format into tasks and returns 
+	 * the number of the last segment the file holds, from the sequence 
+	 * line it starts with, or 0 if it has none.
+	 * 
+	 * @param filePath        the path to the file.
+	 * @param tasks           the list to add the tasks to in file order.
+	 * @return                the segment sequence of the file.
+	 * @throws IOException    if the file cannot be read.
+	 */
+	private long readTextFile(Path filePath, List<Task> tasks) 
+			throws IOException {
+		try (BufferedReader reader = Files.newBufferedReader(filePath)) {
 			String line = reader.readLine();
+			long sequence = readTextSequence(line);
+			if (sequence > 0) {
+				line = reader.readLine();
+			}
 		    while (line != null) {
-		    	Task task = new Task(line);
-	    		line = reader.readLine();
-		    	while (line != null) {
-		    		if (line.startsWith(COMMENT_SPACE)) {
-		    			task.setComment(line.substring(OFFSET_8));
-		    		}
-		    		if (line.startsWith(START_DATE_SPACE)) {
-		    			task.setStartDate(changeStringToDate(line.substring(OFFSET_10)));
-		    		}
-		    		if (line.startsWith(START_TIME_SPACE)) {
-		    			task.setStartTime(changeStringToTime(line.substring(OFFSET_10)));
-		    		}
-		    		if (line.startsWith(END_DATE_SPACE)) {
-		    			task.setEndDate(changeStringToDate(line.substring(OFFSET_8)));
-		    		}
-		    		if (line.startsWith(END_TIME_SPACE)) {
-		    			task.setEndTime(changeStringToTime(line.substring(OFFSET_8)));
-		    		}
-		    		if (line.startsWith(RECURRING_SPACE)) {
-		    			int recurrence = Integer.parseInt(line.substring(OFFSET_10));
-		    			line = reader.readLine();
-		    			if (line.startsWith(DAILY)) {
-		    				task = new RecurringTask(task, recurrence);
-		    			}
-		    			else if (line.startsWith(WEEKLY_SPACE)) {
-		    				DayOfWeek dayOfWeek = DayOfWeek.valueOf(line.substring(OFFSET_7));
-		    				task = new RecurringTask(task, recurrence, dayOfWeek);
-		    			}
-		    			else if (line.startsWith(MONTHLY_SPACE)) {
-		    				int dayOfMonth = Integer.parseInt(line.substring(OFFSET_8));
-		    				task = new RecurringTask(task, recurrence, dayOfMonth);
-		    			}
-		    			else if (line.startsWith(YEARLY_SPACE)){
-		    				MonthDay monthDay = MonthDay.parse(line.substring(OFFSET_7));
-		    				task = new RecurringTask(task, recurrence, monthDay);
-		    			}
-		    			else {
-		    				task = new RecurringTask(task, recurrence);
-		    			}
-		    		}
-		    		if (line.startsWith("ID")) {
-			    		if (line.length() > 2) {
-			    			task.setId(line.substring(3).trim());
-			    		}
-			    		else {
-			    			task.setId(null);
-			    		}
-		    		}
-		    		line = reader.readLine();
-		    		if (line.startsWith(END_OF_TASK)) {
-		    			break;
-		    		}
-		    	}
-			    storeTask(task);
+			    tasks.add(readTask(reader, line));
 		    	line = reader.readLine();
 		    }
-		    reader.close();
+		    return sequence;
+		}
+	}
+	
+	/**
+	 * Returns the segment sequence held by the first line of a text file, 
+	 * or 0 if the line is not a sequence line.
+	 */
+	private static long readTextSequence(String line) {
+		if (line == null || !line.startsWith(SEQUENCE_SPACE)) {
+			return 0;
+		}
+		try {
+			return Long.parseLong(line.substring(SEQUENCE_SPACE.length()));
+		} catch (NumberFormatException error) {
+			return 0;
+		}
+	}
+	
+	/**
+	 * Applies the records in the journal or segment at logPath, if there 
+	 * is one, to the list. Runs of store records are inserted together 
+	 * with storeAll.
+	 * 
+	 * @param logPath    the path to the journal or segment.
+	 */
+	protected void replayLog(Path logPath) {
+		if (!logPath.toFile().exists()) {
+			return;
+		}
+		try (BufferedReader reader = Files.newBufferedReader(logPath)) {
+			replayRecords(reader);
 		} catch (IOException error) {
-			//error.printStackTrace();
 			System.err.format("%s%n", error);
 		}
 	}
 	
+	/**
+	 * Applies the journal records read from reader to the list. Lines that 
+	 * are not records, such as commit markers, are skipped.
+	 * 
+	 * @param reader    the reader over the records.
+	 */
+	private void replayRecords(BufferedReader reader) {
+		isLoading = true;
+		List<Task> stored = new ArrayList<Task>();
+		try {
+			String line = reader.readLine();
+			while (line != null) {
+				if (line.equals(JOURNAL_STORE)) {
+					stored.add(readTask(reader, reader.readLine()));
+				}
+				else if (line.startsWith(JOURNAL_REMOVE_SPACE)) {
+					storeAll(stored);
+					stored.clear();
+					Task task = search(line.substring(OFFSET_7));
+					if (task != null) {
+						list.remove(task);
+					}
+				}
+				line = reader.readLine();
+			}
+		} catch (IOException error) {
+			System.err.format("%s%n", error);
+		}
+		storeAll(stored);
+		isLoading = false;
+	}
+	
+	/**
+	 * Reads a single task in the special string format. The name line has 
+	 * already been read and the reader is left after the end of the task.
+	 * 
+	 * @param reader          the reader to read from.
+	 * @param line            the name line of the task.
+	 * @return                the Task object read.
+	 * @throws IOException    if the read fails.
+	 */
+	protected Task readTask(BufferedReader reader, String line) 
+			throws IOException {
+		Task task = new Task(line);
+		line = reader.readLine();
+		while (line != null) {
+			if (line.startsWith(COMMENT_SPACE)) {
+				task.setComment(line.substring(OFFSET_8));
+			}
+			if (line.startsWith(START_DATE_SPACE)) {
+				task.setStartDate(changeStringToDate(line.substring(OFFSET_10)));
+			}
+			if (line.startsWith(START_TIME_SPACE)) {
+				task.setStartTime(changeStringToTime(line.substring(OFFSET_10)));
+			}
+			if (line.startsWith(END_DATE_SPACE)) {
+				task.setEndDate(changeStringToDate(line.substring(OFFSET_8)));
+			}
+			if (line.startsWith(END_TIME_SPACE)) {
+				task.setEndTime(changeStringToTime(line.substring(OFFSET_8)));
+			}
+			if (line.startsWith(RECURRING_SPACE)) {
+				int recurrence = Integer.parseInt(line.substring(OFFSET_10));
+				line = reader.readLine();
+				if (line.startsWith(DAILY)) {
+					task = new RecurringTask(task, recurrence);
+				}
+				else if (line.startsWith(WEEKLY_SPACE)) {
+					DayOfWeek dayOfWeek = DayOfWeek.valueOf(line.substring(OFFSET_7));
+					task = new RecurringTask(task, recurrence, dayOfWeek);
+				}
+				else if (line.startsWith(MONTHLY_SPACE)) {
+					int dayOfMonth = Integer.parseInt(line.substring(OFFSET_8));
+					task = new RecurringTask(task, recurrence, dayOfMonth);
+				}
+				else if (line.startsWith(YEARLY_SPACE)){
+					MonthDay monthDay = MonthDay.parse(line.substring(OFFSET_7));
+					task = new RecurringTask(task, recurrence, monthDay);
+				}
+				else {
+					task = new RecurringTask(task, recurrence);
+				}
+			}
+			if (line.startsWith("ID")) {
+				if (line.length() > 2) {
+					task.setId(line.substring(3).trim());
+				}
+				else {
+					task.setId(null);
+				}
+			}
+			line = reader.readLine();
+			if (line.startsWith(END_OF_TASK)) {
+				break;
+			}
+		}
+		return task;
+	}
+	
 	/**
 	 * Changes the string passed to a LocalTime object.
 	 * 
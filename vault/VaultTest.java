@@ -4,10 +4,27 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertEquals;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
 
+import javafx.collections.ObservableList;
+import model.RecurringTask;
 import model.Task;
+import storage.CommitLog;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -95,6 +112,17 @@ public class VaultTest {
 		assertNotNull(trashVault.getList());
 		assertNotNull(historyVault.getList());
 	}
+
+	@Test
+	public void testGetListSnapshot() {
+		ObservableList<Task> snapshot = taskVault.getList();
+		assertTrue(taskVault.getList() == snapshot);
+		int size = snapshot.size();
+		assertTrue(taskVault.createTask("snapshot", "", null, null, null, null));
+		assertTrue(snapshot.size() == size);
+		assertTrue(taskVault.getList().size() == size + 1);
+		assertTrue(taskVault.remove("snapshot"));
+	}
 	
 	@Test
 	public void testDeleteTask() {
@@ -134,6 +162,24 @@ public class VaultTest {
 		assertTrue(historyVault.search("").getComment().equals("first"));
 	}
 	
+	/**
+	 * Testing that pop finds the last task by its current name and that 
+	 * peek returns the last task.
+	 */
+	@Test
+	public void testHistoryPopRenamed() {
+		Task renamed = new Task("old", null, null, null, null, null);
+		Task other = new Task("new", null, null, null, null, null);
+		assertTrue(historyVault.storeTask(renamed));
+		assertTrue(historyVault.storeTask(other));
+		renamed.setTaskName("new");
+		assertTrue(historyVault.peek() == other);
+		assertNull(historyVault.pop("old"));
+		assertTrue(historyVault.pop("new") == other);
+		assertTrue(historyVault.pop("new") == renamed);
+		assertTrue(historyVault.peek().getComment().equals("last"));
+	}
+	
 	/**
 	 * Testing that storeTask will store an identical object with the 
 	 * same reference.
@@ -149,10 +195,405 @@ public class VaultTest {
 		assertTrue(historyVault.storeTask(testingTask3));
 	}
 	
+	/**
+	 * Testing that a journaled save can be read back by a new vault
+	 * with both the store and the remove replayed.
+	 */
+	@Test
+	public void testJournalReplay() throws IOException {
+		taskVault.setJournaled(true);
+		taskVault.save();
+		assertTrue(taskVault.createTask("journaled", "", null, null, null, null));
+		assertTrue(taskVault.createTask("removed", "", null, null, null, null));
+		assertTrue(taskVault.remove("removed"));
+		taskVault.save();
+		TaskVault reopened = new TaskVault(vaultPath);
+		assertNotNull(reopened.getTask("journaled"));
+		assertNull(reopened.getTask("removed"));
+		assertTrue(reopened.remove("journaled"));
+		reopened.save();
+	}
+	
+	/**
+	 * Testing that a crash after a snapshot is written but before its 
+	 * journal is deleted neither duplicates stored tasks nor replays 
+	 * removals on reopening.
+	 */
+	@Test
+	public void testSnapshotBeforeJournalDeleted() throws IOException {
+		taskVault.setJournaled(true);
+		taskVault.save();
+		assertTrue(taskVault.createTask("sealed", "", null, null, null, null));
+		assertTrue(taskVault.createTask("sealed", "", null, null, null, null));
+		assertTrue(taskVault.remove("sealed"));
+		taskVault.save();
+		assertTrue(taskVault.getJournal().exists());
+		int size = taskVault.getList().size();
+		assertTrue(taskVault.sealJournalForSnapshot());
+		assertTrue(taskVault.writeSnapshot());
+		// Crash here, before the sealed journal is deleted
+		TaskVault reopened = new TaskVault(vaultPath);
+		assertTrue(reopened.getList().size() == size);
+		assertTrue(reopened.getTasksNamed("sealed").size() == 1);
+		assertTrue(reopened.remove("sealed"));
+		reopened.save();
+	}
+	
+	/**
+	 * Testing that a vault is only marked modified by changes and that 
+	 * save resets it.
+	 */
+	@Test
+	public void testModified() {
+		trashVault.save();
+		assertFalse(trashVault.isModified());
+		assertNull(trashVault.getTask("unmodified"));
+		assertFalse(trashVault.isModified());
+		assertTrue(taskVault.deleteTask("", trashVault));
+		assertTrue(trashVault.isModified());
+		trashVault.save();
+		assertFalse(trashVault.isModified());
+	}
+	
+	/**
+	 * Testing that a task saved in the binary format is read back with 
+	 * all its fields, and that the format is detected when opening.
+	 */
+	@Test
+	public void testBinaryFormat() throws IOException {
+		Task task = new RecurringTask("binary", "comment", 
+				                      LocalDate.of(2015, 3, 12), LocalTime.of(9, 30),
+				                      LocalDate.of(2015, 3, 13), LocalTime.of(18, 0),
+				                      3, DayOfWeek.THURSDAY);
+		task.setId("@zz");
+		completedTaskVault.setFileFormat(FileFormat.BINARY);
+		assertTrue(completedTaskVault.storeTask(task));
+		completedTaskVault.save();
+		CompletedTaskVault reopened = new CompletedTaskVault(vaultPath);
+		RecurringTask loaded = (RecurringTask) reopened.getTask("@zz");
+		assertNotNull(loaded);
+		assertTrue(loaded.getComment().equals("comment"));
+		assertTrue(loaded.getStartDate().equals(task.getStartDate()));
+		assertTrue(loaded.getStartTime().equals(task.getStartTime()));
+		assertTrue(loaded.getEndDate().equals(task.getEndDate()));
+		assertTrue(loaded.getEndTime().equals(task.getEndTime()));
+		assertTrue(loaded.getRecurrence() == 3);
+		assertTrue(loaded.getRecurrenceDay() == DayOfWeek.THURSDAY);
+		reopened.setFileFormat(FileFormat.TEXT);
+		assertTrue(reopened.clear());
+	}
+	
+	@Test
+	public void testMappedReaderCorruptTime() throws IOException {
+		Path filePath = Paths.get(vaultPath, "mapped.txt");
+		Task task = new Task("t", null, LocalDate.of(2015, 3, 12),
+				             LocalTime.of(9, 30), null, null);
+		BinaryVaultFile.write(filePath, Arrays.asList(task), 0);
+		List<Task> loaded = new MappedVaultReader(filePath).readAll();
+		assertTrue(loaded.get(0).getStartTime().equals(LocalTime.of(9, 30)));
+		// Header, record length, flags, name and start date come first
+		byte[] bytes = Files.readAllBytes(filePath);
+		int timeOffset = BinaryVaultFile.HEADER_LENGTH + Long.BYTES 
+				         + Integer.BYTES + 1 + Integer.BYTES + 1 + Integer.BYTES;
+		bytes[timeOffset] = 0x7F;
+		Files.write(filePath, bytes);
+		MappedVaultReader reader = new MappedVaultReader(filePath);
+		boolean isReported = false;
+		try {
+			reader.next();
+		} catch (IOException error) {
+			isReported = error.getMessage().startsWith("corrupt vault record");
+		}
+		assertTrue(isReported);
+		Files.delete(filePath);
+	}
+	
+	@Test
+	public void testMappedReaderCorruptCount() throws IOException {
+		Path filePath = Paths.get(vaultPath, "mapped.txt");
+		Task task = new Task("t", null, null, null, null, null);
+		// Task count follows the magic number and the version
+		int countOffset = Integer.BYTES + Short.BYTES;
+		for (int count : new int[] { -1, Integer.MAX_VALUE }) {
+			BinaryVaultFile.write(filePath, Arrays.asList(task), 0);
+			ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(filePath));
+			bytes.putInt(countOffset, count);
+			Files.write(filePath, bytes.array());
+			boolean isReported = false;
+			try {
+				new MappedVaultReader(filePath).readAll();
+			} catch (IOException error) {
+				isReported = error.getMessage().startsWith("corrupt vault");
+			}
+			assertTrue(isReported);
+		}
+		Files.delete(filePath);
+	}
+	
+	@Test
+	public void testStoreAll() {
+		Task floating = new Task("floating", null, null, null, null, null);
+		Task dated = new Task("dated", null, LocalDate.of(2015, 3, 12),
+				              LocalTime.of(9, 30), null, null);
+		int size = trashVault.getList().size();
+		assertTrue(trashVault.storeAll(Arrays.asList(floating, dated, 
+				                                     floating, null)));
+		assertTrue(trashVault.getList().size() == size + 2);
+		assertTrue(trashVault.getList().indexOf(dated) 
+				   < trashVault.getList().indexOf(floating));
+		assertFalse(trashVault.storeAll(Arrays.asList(floating)));
+	}
+	
+	@Test
+	public void testSortedTaskList() {
+		SortedTaskList sorted = new SortedTaskList();
+		List<Task> expected = new ArrayList<Task>();
+		Random random = new Random(7);
+		for (int i = 0; i < 500; i++) {
+			Task task = new Task("task" + i, null, null, null, null, null);
+			if (random.nextBoolean()) {
+				task.setStartDate(LocalDate.of(2015, 1, 1 + random.nextInt(5)));
+				task.setStartTime(LocalTime.of(9, 0));
+			}
+			sorted.add(task);
+			expected.add(task);
+		}
+		Collections.sort(expected);
+		assertTrue(sorted.equals(expected));
+		for (int i = 0; i < 200; i++) {
+			Task task = expected.remove(random.nextInt(expected.size()));
+			assertTrue(sorted.indexOf(task) >= 0);
+			assertTrue(sorted.remove(task));
+		}
+		assertTrue(sorted.equals(expected));
+		assertTrue(sorted.indexOf(expected.get(100)) == 100);
+	}
+
+	@Test
+	public void testOverlappingTasks() {
+		LocalDate date = LocalDate.of(2030, 5, 1);
+		assertTrue(taskVault.createTask("morning", "", date, LocalTime.of(9, 0),
+				                        date, LocalTime.of(12, 0)));
+		assertTrue(taskVault.createTask("noon", "", date, LocalTime.of(12, 0),
+				                        date, LocalTime.of(13, 0)));
+		LocalDateTime start = LocalDateTime.of(date, LocalTime.of(11, 0));
+		List<Task> overlaps = taskVault.getOverlappingTasks(start,
+				start.plusHours(1));
+		assertTrue(overlaps.size() == 1);
+		assertTrue(overlaps.get(0).getTaskName().equals("morning"));
+		assertFalse(taskVault.hasOverlap(start.plusHours(2), start.plusHours(3)));
+		assertTrue(taskVault.remove("morning"));
+		assertFalse(taskVault.hasOverlap(start, start.plusHours(1)));
+		assertTrue(taskVault.remove("noon"));
+	}
+
+	@Test
+	public void testTasksBetween() {
+		LocalDate date = LocalDate.of(2030, 6, 1);
+		assertTrue(taskVault.createTask("trip", "", date, LocalTime.of(9, 0),
+				                        date.plusDays(3), LocalTime.of(18, 0)));
+		assertTrue(taskVault.createTask("deadline", "", date.plusDays(2),
+				                        LocalTime.of(12, 0), null, null));
+		List<Task> found = taskVault.getTasksBetween(date.plusDays(1),
+				                                     date.plusDays(2));
+		assertTrue(found.size() == 2);
+		assertTrue(found.get(0).getTaskName().equals("trip"));
+		assertTrue(taskVault.getTasksBetween(date.plusDays(3),
+				                             date.plusDays(3)).size() == 1);
+		assertTrue(taskVault.getTasksBetween(date.plusDays(4),
+				                             date.plusDays(9)).isEmpty());
+		assertTrue(taskVault.remove("trip"));
+		assertTrue(taskVault.remove("deadline"));
+	}
+
+	@Test
+	public void testSearchIndex() {
+		Task task = new Task("before", null, null, null, null, null);
+		task.setId("@zi");
+		assertTrue(trashVault.storeTask(task));
+		assertTrue(trashVault.search("@zi") == task);
+		task.setTaskName("after");
+		task.setId("@zj");
+		assertNull(trashVault.search("before"));
+		assertNull(trashVault.search("@zi"));
+		assertTrue(trashVault.search("after") == task);
+		assertTrue(trashVault.search("@zj") == task);
+		assertTrue(trashVault.remove("after"));
+		assertNull(trashVault.search("@zj"));
+	}
+
+	@Test
+	public void testTasksContaining() {
+		Task meeting = new Task("team meeting", null, null, null, null, null);
+		Task meet = new Task("meet", null, null, null, null, null);
+		meeting.setId("@zm");
+		meet.setId("@zn");
+		assertTrue(trashVault.storeTask(meeting));
+		assertTrue(trashVault.storeTask(meet));
+		assertTrue(trashVault.getTasksContaining("meet").size() == 2);
+		assertTrue(trashVault.getTasksContaining("eam").get(0) == meeting);
+		assertTrue(trashVault.getTasksContaining("eeting").get(0) == meeting);
+		assertTrue(trashVault.getTasksContaining("eetings").isEmpty());
+		meeting.setTaskName("review");
+		assertTrue(trashVault.getTasksContaining("meet").size() == 1);
+		assertTrue(trashVault.getTasksContaining("v").get(0) == meeting);
+		assertTrue(trashVault.getTasksContaining("eeting").isEmpty());
+		assertTrue(trashVault.getTasksNamed("review").get(0) == meeting);
+		assertTrue(trashVault.remove("review"));
+		assertTrue(trashVault.remove("meet"));
+	}
+
+	@Test
+	public void testFindLongestKey() {
+		Task meet = new Task("meet", null, null, null, null, null);
+		Task meeting = new Task("meeting", null, null, null, null, null);
+		meet.setId("@zm");
+		meeting.setId("@zmt");
+		assertTrue(trashVault.storeTask(meet));
+		assertTrue(trashVault.storeTask(meeting));
+		assertEquals("meeting", trashVault.findLongestKey("meeting 1/1/2016"));
+		assertEquals("meet", trashVault.findLongestKey("meet up"));
+		assertEquals("@zmt", trashVault.findLongestKey("@zmt weekly"));
+		assertEquals("", trashVault.findLongestKey("lunch"));
+		meeting.setTaskName("lunch");
+		assertEquals("meet", trashVault.findLongestKey("meeting"));
+		assertEquals("lunch", trashVault.findLongestKey("lunch"));
+		assertTrue(trashVault.remove("meet"));
+		assertTrue(trashVault.remove("lunch"));
+		assertEquals("", trashVault.findLongestKey("meeting"));
+	}
+
+	@Test
+	public void testSearchText() {
+		Task report = new Task("report", "Budget review with finance", null,
+				               null, null, null);
+		Task budget = new Task("budget", "numbers for the report", null, null,
+				               null, null);
+		Task lunch = new Task("lunch", "-", null, null, null, null);
+		report.setId("@zr");
+		budget.setId("@zb");
+		lunch.setId("@zl");
+		assertTrue(trashVault.storeTask(report));
+		assertTrue(trashVault.storeTask(budget));
+		assertTrue(trashVault.storeTask(lunch));
+		assertTrue(trashVault.searchText("BUDGET", 10).size() == 2);
+		assertTrue(trashVault.searchText("budget", 10).get(0) == budget);
+		assertTrue(trashVault.searchText("budget", 1).size() == 1);
+		assertTrue(trashVault.searchText("finance", 10).get(0) == report);
+		assertTrue(trashVault.searchText("dinner", 10).isEmpty());
+		lunch.setComment("finance lunch");
+		assertTrue(trashVault.searchText("finance", 10).size() == 2);
+		assertTrue(trashVault.remove("report"));
+		assertTrue(trashVault.remove("budget"));
+		assertTrue(trashVault.remove("lunch"));
+		assertTrue(trashVault.searchText("finance", 10).isEmpty());
+	}
+
+	@Test
+	public void testLazyLoading() throws IOException {
+		Task stored = new Task("stored", null, null, null, null, null);
+		stored.setId("@zx");
+		Task appended = new Task("appended", null, null, null, null, null);
+		appended.setId("@zy");
+		trashVault.setJournaled(true);
+		assertTrue(trashVault.storeTask(stored));
+		trashVault.save();
+		TrashVault reopened = new TrashVault(vaultPath);
+		reopened.setJournaled(true);
+		assertFalse(reopened.isLoaded());
+		assertTrue(reopened.storeTask(appended));
+		assertFalse(reopened.isLoaded());
+		reopened.save();
+		assertTrue(reopened.getTask("appended") != null);
+		assertTrue(reopened.isLoaded());
+		assertTrue(reopened.clear());
+	}
+
+	/**
+	 * Testing that a vault loaded lazily reads a committed batch that only 
+	 * reached the commit log because appending it to the journal failed.
+	 */
+	@Test
+	public void testLazyLoadingRecoversCommitLog() throws IOException {
+		Task shipped = new Task("unshipped", null, null, null, null, null);
+		shipped.setId("@zu");
+		trashVault.setJournaled(true);
+		trashVault.save();
+		TrashVault reopened = new TrashVault(vaultPath);
+		reopened.setJournaled(true);
+		Path logPath = Paths.get(vaultPath, "vaulttest.commit.log");
+		new CommitLog(logPath).register(reopened.getJournal());
+		Path journalPath = reopened.getJournal().getFilePath();
+		Files.deleteIfExists(journalPath);
+		// Appending to a directory fails, so the batch only reaches the log
+		Files.createDirectory(journalPath);
+		assertTrue(reopened.storeTask(shipped));
+		reopened.save();
+		Files.delete(journalPath);
+		assertFalse(reopened.isLoaded());
+		assertTrue(reopened.getTask("unshipped") != null);
+		assertFalse(Files.exists(logPath));
+		assertTrue(reopened.clear());
+	}
+	
+	@Test
+	public void testSegmentCompaction() throws IOException {
+		completedTaskVault.setJournaled(true);
+		completedTaskVault.setFileFormat(FileFormat.BINARY);
+		completedTaskVault.setSegmented(true);
+		Path segmentPath = Paths.get(completedTaskVault.getFilePath() 
+				                     + ".log.1");
+		char[] comment = new char[200];
+		Arrays.fill(comment, 'c');
+		int count = 0;
+		while (!segmentPath.toFile().exists()) {
+			for (int i = 0; i < 100; i++, count++) {
+				completedTaskVault.storeTask(new Task("task" + count, 
+						new String(comment), null, null, null, null));
+			}
+			completedTaskVault.save();
+		}
+		completedTaskVault.storeTask(new Task("last", null, null, null, null, 
+				                              null));
+		completedTaskVault.save();
+		assertTrue(new CompletedTaskVault(vaultPath).getList().size() 
+				   == count + 1);
+		completedTaskVault.compact();
+		assertFalse(segmentPath.toFile().exists());
+		assertTrue(new CompletedTaskVault(vaultPath).getList().size() 
+				   == count + 1);
+		completedTaskVault.deleteFile();
+	}
+	
 	@Test
 	public void testPop() {
 		assertNotNull(historyVault.pop(""));
 		assertNull(historyVault.pop("1"));
 	}
 
+	/**
+	 * Testing that a lookup right after each added key only works out the
+	 * links of the nodes it reaches, however many keys are held.
+	 */
+	@Test
+	public void testKeyMatcherAddThenLookup() {
+		KeyMatcher matcher = new KeyMatcher();
+		for (int i = 0; i < 20000; i++) {
+			matcher.add("task" + i);
+		}
+		for (int i = 0; i < 100; i++) {
+			matcher.add("added" + i);
+			String text = "do added" + i + " now";
+			long linkCount = matcher.getLinkCount();
+			List<String> longest = matcher.findLongest(text);
+			assertEquals(Arrays.asList("added" + i), longest);
+			// Each character reaches one node, whose links need its parent's
+			assertTrue(matcher.getLinkCount() - linkCount 
+					   <= 2 * text.length());
+		}
+		matcher.remove("task19999");
+		assertEquals(Arrays.asList("task1999"), 
+				     matcher.findLongest("task19999"));
+	}
+
 }